@@ -0,0 +1,155 @@
+package com.wayne.larkbot.benchmarks;
+
+import com.google.gson.Gson;
+import com.lark.oapi.core.utils.Jsons;
+import com.wayne.larkbot.PostBuilder;
+import com.wayne.larkbot.PostContent;
+import com.wayne.larkbot.TextContent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息内容构造与序列化：富文本（小/大）、大量@的文本、交互卡片。
+ * 每组同时测量旧的 Map + Gson 写法与流式写法，便于对比。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Thread)
+public class ContentBenchmark {
+    /** 富文本的行数，1为小消息，200为接近长度上限的大消息 */
+    @Param({"1", "200"})
+    public int lines;
+
+    /** 文本中@的人数 */
+    @Param({"50"})
+    public int mentions;
+
+    private final Gson gson = new Gson();
+    private final PostBuilder reusedBuilder = new PostBuilder("");
+    private List<String> userIds;
+    private Map<String, Object> card;
+
+    @Setup
+    public void setUp() {
+        userIds = new ArrayList<>(mentions);
+        for (int i = 0; i < mentions; i++) {
+            userIds.add("ou_" + String.format("%032x", i));
+        }
+        card = newCard(lines);
+    }
+
+    @Benchmark
+    public String postContentGson() {
+        return Jsons.DEFAULT.toJson(fillPostContent().getContent());
+    }
+
+    @Benchmark
+    public String postContentStreaming() {
+        return fillPostContent().toJson();
+    }
+
+    @Benchmark
+    public String postBuilder() {
+        PostBuilder post = new PostBuilder("日报 \"构建\" <结果>");
+        fillPostBuilder(post);
+        return post.toJson();
+    }
+
+    @Benchmark
+    public String postBuilderReused() {
+        reusedBuilder.clear().title("日报 \"构建\" <结果>");
+        fillPostBuilder(reusedBuilder);
+        return reusedBuilder.toJson();
+    }
+
+    @Benchmark
+    public String mentionTextConcat() {
+        StringBuilder text = new StringBuilder("请以下同学处理告警：");
+        for (String userId : userIds) {
+            text.append(TextContent.makeAtSomeonePattern(userId, "user", "open_id"));
+        }
+        text.append(TextContent.makeBoldPattern("P0")).append(TextContent.makeUrlPattern("https://example.com/alert?id=1&v=2", "详情"));
+        return gson.toJson(Collections.singletonMap("text", text.toString()));
+    }
+
+    @Benchmark
+    public String mentionTextBuilder() {
+        TextContent.Builder text = TextContent.newBuilder().text("请以下同学处理告警：");
+        for (String userId : userIds) {
+            text.at(userId, "user", "open_id");
+        }
+        return text.bold("P0").link("https://example.com/alert?id=1&v=2", "详情").toJson();
+    }
+
+    @Benchmark
+    public String interactiveCardGson() {
+        return Jsons.DEFAULT.toJson(card);
+    }
+
+    private PostContent fillPostContent() {
+        PostContent post = new PostContent("日报 \"构建\" <结果>");
+        for (int i = 0; i < lines; i++) {
+            List<Map<String, Object>> line = new ArrayList<>(4);
+            line.add(post.makeTextContent("第" + i + "项：构建成功，耗时 " + i + "s ", Arrays.asList("bold"), false));
+            line.add(post.makeLinkContent("流水线", "https://ci.example.com/job/" + i, null));
+            line.add(post.makeAtContent(userIds.get(i % userIds.size()), null));
+            post.addContentsInNewLine(line);
+        }
+        return post;
+    }
+
+    private void fillPostBuilder(PostBuilder post) {
+        for (int i = 0; i < lines; i++) {
+            if (i > 0) {
+                post.newLine();
+            }
+            post.text("第" + i + "项：构建成功，耗时 " + i + "s ", "bold")
+                .link("流水线", "https://ci.example.com/job/" + i)
+                .at(userIds.get(i % userIds.size()));
+        }
+    }
+
+    private static Map<String, Object> newCard(int rows) {
+        List<Object> elements = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            Map<String, Object> text = new HashMap<>();
+            text.put("tag", "lark_md");
+            text.put("content", "**服务" + i + "** 延迟 P99 " + (i * 7 % 300) + "ms");
+            Map<String, Object> div = new HashMap<>();
+            div.put("tag", "div");
+            div.put("text", text);
+            elements.add(div);
+        }
+        Map<String, Object> title = new HashMap<>();
+        title.put("tag", "plain_text");
+        title.put("content", "服务健康度");
+        Map<String, Object> header = new HashMap<>();
+        header.put("title", title);
+        header.put("template", "red");
+        Map<String, Object> card = new HashMap<>();
+        card.put("config", Collections.singletonMap("wide_screen_mode", true));
+        card.put("header", header);
+        card.put("elements", elements);
+        return card;
+    }
+}
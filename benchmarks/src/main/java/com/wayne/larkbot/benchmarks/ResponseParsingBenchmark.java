@@ -0,0 +1,73 @@
+package com.wayne.larkbot.benchmarks;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.lark.oapi.core.utils.Jsons;
+import com.lark.oapi.service.im.v1.model.CreateMessageResp;
+import com.lark.oapi.service.im.v1.model.ListChatResp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 响应解析：直接读取SDK的类型化响应，与旧实现中 "序列化data再解析为JSON树" 的往返做对比
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Thread)
+public class ResponseParsingBenchmark {
+    private String createMessageBody;
+    private String listChatBody;
+
+    @Setup
+    public void setUp() {
+        createMessageBody = StubLarkServer.createMessageResponse(1);
+        StringBuilder items = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            if (i > 0) {
+                items.append(',');
+            }
+            items.append("{\"chat_id\":\"oc_").append(String.format("%032x", i))
+                .append("\",\"name\":\"群组").append(i)
+                .append("\",\"avatar\":\"https://example.com/avatar/").append(i)
+                .append("\",\"description\":\"\",\"owner_id\":\"ou_owner\",\"owner_id_type\":\"open_id\",")
+                .append("\"external\":false,\"tenant_key\":\"736588c9260f175d\"}");
+        }
+        listChatBody = "{\"code\":0,\"msg\":\"success\",\"data\":{\"items\":[" + items
+            + "],\"page_token\":\"\",\"has_more\":false}}";
+    }
+
+    @Benchmark
+    public CreateMessageResp createMessageTyped() {
+        return Jsons.DEFAULT.fromJson(createMessageBody, CreateMessageResp.class);
+    }
+
+    @Benchmark
+    public JsonElement createMessageRoundTrip() {
+        CreateMessageResp resp = Jsons.DEFAULT.fromJson(createMessageBody, CreateMessageResp.class);
+        return JsonParser.parseString(Jsons.DEFAULT.toJson(resp.getData()));
+    }
+
+    @Benchmark
+    public ListChatResp listChatTyped() {
+        return Jsons.DEFAULT.fromJson(listChatBody, ListChatResp.class);
+    }
+
+    @Benchmark
+    public JsonElement listChatRoundTrip() {
+        ListChatResp resp = Jsons.DEFAULT.fromJson(listChatBody, ListChatResp.class);
+        return JsonParser.parseString(Jsons.DEFAULT.toJson(resp.getData().getItems()));
+    }
+}
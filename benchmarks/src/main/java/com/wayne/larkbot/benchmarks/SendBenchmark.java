@@ -0,0 +1,94 @@
+package com.wayne.larkbot.benchmarks;
+
+import com.lark.oapi.Client;
+import com.wayne.larkbot.LarkBot;
+import com.wayne.larkbot.LarkExecutors;
+import com.wayne.larkbot.PostBuilder;
+import com.wayne.larkbot.RetryPolicy;
+import com.wayne.larkbot.TextContent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 端到端发送：LarkBot -> SDK -> 本地模拟服务，包含内容序列化、请求构造、HTTP往返和响应解析。
+ * 客户端限流与重试均关闭，测得的是库本身的开销。
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SendBenchmark {
+    /** 模拟服务在每次响应前的延迟 */
+    @Param({"0"})
+    public long serverDelayMillis;
+
+    private StubLarkServer server;
+    private ExecutorService executor;
+    private LarkBot bot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = new StubLarkServer(serverDelayMillis);
+        Client client = Client.newBuilder("cli_bench", "bench_secret")
+            .openBaseUrl(server.getBaseUrl())
+            .build();
+        executor = LarkExecutors.newDefaultExecutor();
+        bot = new LarkBot(client, executor);
+        bot.setRateLimiter(null);
+        bot.setRetryPolicy(RetryPolicy.none());
+        // 预先获取tenant_access_token，避免计入第一次发送
+        bot.sendTextToChat("oc_bench", "warmup");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        bot.shutdown();
+        executor.shutdownNow();
+        server.close();
+    }
+
+    @Benchmark
+    public String sendTextToChat() throws Exception {
+        return bot.sendTextToChat("oc_bench", "构建完成：lark-bot-java #1024 耗时 93s");
+    }
+
+    @Benchmark
+    public String sendTextToChatBuilder() throws Exception {
+        return bot.sendTextToChat("oc_bench", TextContent.newBuilder()
+            .text("构建完成：")
+            .bold("lark-bot-java #1024")
+            .at("ou_0123456789abcdef0123456789abcdef", "owner", "open_id")
+            .link("https://ci.example.com/job/1024", "详情"));
+    }
+
+    @Benchmark
+    public String sendPostToChat() throws Exception {
+        return bot.sendPostToChat("oc_bench", new PostBuilder("构建完成")
+            .text("lark-bot-java #1024 耗时 93s", "bold")
+            .newLine()
+            .link("详情", "https://ci.example.com/job/1024"));
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String sendTextToChatConcurrent() throws Exception {
+        return bot.sendTextToChat("oc_bench", "构建完成：lark-bot-java #1024 耗时 93s");
+    }
+}
@@ -0,0 +1,101 @@
+package com.wayne.larkbot.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内模拟飞书开放平台的HTTP服务，只实现基准测试用到的接口：获取tenant_access_token与发送消息。
+ * 可配置固定延迟来模拟网络往返。
+ */
+public class StubLarkServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long delayMillis;
+    private final AtomicLong messageCounter = new AtomicLong();
+
+    /**
+     * @param delayMillis 每个请求在响应前等待的毫秒数
+     * @throws IOException 启动服务失败
+     */
+    public StubLarkServer(long delayMillis) throws IOException {
+        this.delayMillis = delayMillis;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-lark-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/open-apis/auth/v3/tenant_access_token/internal", exchange -> respond(exchange,
+            "{\"code\":0,\"msg\":\"ok\",\"tenant_access_token\":\"t-stub\",\"expire\":7200}"));
+        server.createContext("/open-apis/auth/v3/app_access_token/internal", exchange -> respond(exchange,
+            "{\"code\":0,\"msg\":\"ok\",\"app_access_token\":\"a-stub\",\"tenant_access_token\":\"t-stub\",\"expire\":7200}"));
+        server.createContext("/open-apis/im/v1/messages", exchange -> respond(exchange,
+            createMessageResponse(messageCounter.incrementAndGet())));
+        server.createContext("/", exchange -> respond(exchange, "{\"code\":404,\"msg\":\"not found in stub\"}"));
+        server.start();
+    }
+
+    /**
+     * @return 服务地址，作为SDK客户端的openBaseUrl
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public long getMessageCount() {
+        return messageCounter.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * @param sequence 消息序号，用于生成不同的message_id
+     * @return 发送消息接口的成功响应
+     */
+    static String createMessageResponse(long sequence) {
+        return "{\"code\":0,\"msg\":\"success\",\"data\":{"
+            + "\"message_id\":\"om_" + String.format("%032x", sequence) + "\","
+            + "\"root_id\":\"\",\"parent_id\":\"\",\"msg_type\":\"text\","
+            + "\"create_time\":\"1700000000000\",\"update_time\":\"1700000000000\","
+            + "\"deleted\":false,\"updated\":false,\"chat_id\":\"oc_bench\","
+            + "\"sender\":{\"id\":\"cli_bench\",\"id_type\":\"app_id\",\"sender_type\":\"app\",\"tenant_key\":\"736588c9260f175d\"},"
+            + "\"body\":{\"content\":\"{\\\"text\\\":\\\"hello\\\"}\"}}}";
+    }
+
+    private void respond(HttpExchange exchange, String body) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) != -1) {
+                // 读完请求体以便复用连接
+            }
+        }
+        if (delayMillis > 0) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.getResponseHeaders().set("X-Request-Id", "stub-" + System.nanoTime());
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
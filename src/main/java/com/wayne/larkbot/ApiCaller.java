@@ -0,0 +1,26 @@
+package com.wayne.larkbot;
+
+import com.lark.oapi.core.response.BaseResponse;
+
+import java.util.concurrent.Callable;
+
+/**
+ * 发起SDK调用的方式：LarkBot 借此让群组目录、成员缓存等组件的调用同样记录指标，并在凭证失效时刷新
+ */
+interface ApiCaller {
+    /** 直接调用SDK，不记录指标，用于单独创建的组件 */
+    ApiCaller DIRECT = new ApiCaller() {
+        @Override
+        public <T extends BaseResponse<?>> T call(String api, Callable<T> call) throws Exception {
+            return call.call();
+        }
+    };
+
+    /**
+     * @param api 接口名，取值见 LarkMetrics 中的常量
+     * @param call SDK调用
+     * @return SDK响应
+     * @throws Exception SDK调用抛出的异常
+     */
+    <T extends BaseResponse<?>> T call(String api, Callable<T> call) throws Exception;
+}
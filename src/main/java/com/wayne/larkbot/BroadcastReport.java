@@ -0,0 +1,50 @@
+package com.wayne.larkbot;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 批量广播的结果汇总，按接收者顺序保存每一条发送结果
+ */
+public class BroadcastReport {
+    private final List<SendResult> results;
+    private final long elapsedMillis;
+
+    BroadcastReport(List<SendResult> results, long elapsedMillis) {
+        this.results = Collections.unmodifiableList(results);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return 与接收者列表一一对应的发送结果
+     */
+    public List<SendResult> getResults() {
+        return results;
+    }
+
+    /**
+     * @return 发送失败的结果
+     */
+    public List<SendResult> getFailures() {
+        return results.stream().filter(result -> !result.isSuccess()).collect(Collectors.toList());
+    }
+
+    public int getSuccessCount() {
+        return (int) results.stream().filter(SendResult::isSuccess).count();
+    }
+
+    public int getFailureCount() {
+        return results.size() - getSuccessCount();
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BroadcastReport{total=%d, success=%d, failure=%d, elapsed=%dms}",
+            results.size(), getSuccessCount(), getFailureCount(), elapsedMillis);
+    }
+}
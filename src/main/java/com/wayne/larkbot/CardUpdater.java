@@ -0,0 +1,270 @@
+package com.wayne.larkbot;
+
+import com.lark.oapi.core.utils.Jsons;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 卡片消息的原地更新：卡片发送一次后，进度变化通过更新消息接口改写同一张卡片。
+ * 每条消息的更新按最后写入为准合并，两次更新之间至少间隔指定时间，同一条消息同时最多一个更新请求，
+ * 大量进度回调只产生少量接口调用。卡片的 config 中需声明 "update_multi": true。
+ * 卡片内容在实际发出更新时才序列化，传入后不应再修改。
+ * 只调用update而从不调用finish的消息，在最后一次更新后空闲超过指定时间即停止跟踪。
+ */
+public class CardUpdater {
+    private static final Logger log = LoggerFactory.getLogger(CardUpdater.class);
+    /** 暂时性失败连续达到该次数后放弃该内容 */
+    private static final int MAX_RETRIES = 5;
+
+    private final LarkBot bot;
+    private final long minIntervalNanos;
+    private final long idleTimeoutNanos;
+    private final ScheduledExecutorService timer;
+    private final Map<String, LiveCard> cards = new HashMap<>(); // 由this保护
+    private long patchCount; // 由this保护
+    private long coalescedCount; // 由this保护
+
+    private CardUpdater(Builder builder) {
+        this.bot = builder.bot;
+        this.minIntervalNanos = builder.minIntervalNanos;
+        this.idleTimeoutNanos = builder.idleTimeoutNanos;
+        this.timer = Executors.newScheduledThreadPool(builder.threads, LarkExecutors.daemonThreadFactory("lark-card-updater"));
+        long sweepNanos = Math.max(TimeUnit.SECONDS.toNanos(1), idleTimeoutNanos / 2);
+        timer.scheduleWithFixedDelay(this::expireIdle, sweepNanos, sweepNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param bot 用于发送与更新卡片的机器人
+     * @return 构建器
+     */
+    public static Builder newBuilder(LarkBot bot) {
+        return new Builder(bot);
+    }
+
+    /**
+     * 发送卡片消息给特定聊天群组，返回的message_id用于后续更新
+     * @param chatId 群组的chat_id
+     * @param card 卡片内容
+     * @return 卡片消息的message_id
+     * @throws Exception 发送失败，飞书返回错误码时为 LarkApiException
+     */
+    public String sendToChat(String chatId, Map<String, Object> card) throws Exception {
+        SendResult result = bot.sendMessageWithResult("chat_id", chatId, "interactive", Jsons.DEFAULT.toJson(card), null);
+        if (result.getError() instanceof Exception) {
+            throw (Exception) result.getError();
+        }
+        if (!result.isSuccess() || result.getMessageId() == null) {
+            throw new LarkApiException("send card", result.getCode(), result.getMsg(), result.getRequestId());
+        }
+        return result.getMessageId();
+    }
+
+    /**
+     * 更新卡片内容；距上次更新不足最小间隔或上次更新尚未完成时，只保留最新的内容，到期后发出
+     * @param messageId 卡片消息的message_id
+     * @param card 新的卡片内容
+     */
+    public void update(String messageId, Map<String, Object> card) {
+        submit(messageId, card, false);
+    }
+
+    /**
+     * 写入最终状态：与update相同地合并与限速，最终内容更新完成后不再跟踪该消息
+     * @param messageId 卡片消息的message_id
+     * @param card 最终的卡片内容
+     * @return 最终内容更新完成时完成，更新失败时以异常完成
+     */
+    public CompletableFuture<Void> finish(String messageId, Map<String, Object> card) {
+        return submit(messageId, card, true);
+    }
+
+    /**
+     * @return 实际发出的更新请求数
+     */
+    public synchronized long getPatchCount() {
+        return patchCount;
+    }
+
+    /**
+     * @return 被后续内容覆盖而未发出的更新数
+     */
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * 停止接收新的更新；已安排的更新仍按时发出，期间提交的最后内容随后立即发出，之后线程退出
+     */
+    public synchronized void close() {
+        timer.shutdown();
+    }
+
+    private synchronized CompletableFuture<Void> submit(String messageId, Map<String, Object> card, boolean finish) {
+        if (timer.isShutdown()) {
+            throw new IllegalStateException("CardUpdater is closed");
+        }
+        LiveCard live = cards.computeIfAbsent(messageId, id -> new LiveCard());
+        if (live.pending != null) {
+            coalescedCount++;
+        }
+        live.pending = card;
+        live.finishing |= finish;
+        if (!live.inFlight) {
+            live.inFlight = true;
+            schedule(messageId, live);
+        }
+        return live.finished;
+    }
+
+    /**
+     * 在距上次更新满最小间隔时发出，调用时需持有this
+     */
+    private void schedule(String messageId, LiveCard live) {
+        long delay = live.lastPatchNanos == 0 ? 0 : live.lastPatchNanos + minIntervalNanos - System.nanoTime();
+        timer.schedule(() -> patch(messageId, live), Math.max(0, delay), TimeUnit.NANOSECONDS);
+    }
+
+    private void patch(String messageId, LiveCard live) {
+        Map<String, Object> card;
+        synchronized (this) {
+            card = live.pending;
+            live.pending = null;
+            live.lastPatchNanos = System.nanoTime();
+            patchCount++;
+        }
+        Exception failure = null;
+        try {
+            bot.updateInteractive(messageId, card);
+        } catch (Exception e) {
+            failure = e;
+        }
+        boolean flushNow = false;
+        synchronized (this) {
+            boolean closing = timer.isShutdown();
+            boolean retry = failure != null && isRetryable(failure) && ++live.failures < MAX_RETRIES;
+            if (failure == null) {
+                live.failures = 0;
+            }
+            if (retry && live.pending == null && !closing) {
+                // 限流、网络异常等暂时性失败，没有更新的内容时在下一个间隔重发同一内容
+                live.pending = card;
+            }
+            if (live.pending != null) {
+                if (!closing) {
+                    schedule(messageId, live);
+                    return;
+                }
+                flushNow = true;
+            } else {
+                live.inFlight = false;
+                if (live.finishing || failure != null && (closing || !retry)) {
+                    // 最终内容已写入，或消息已被撤回等无法继续更新
+                    cards.remove(messageId);
+                    if (failure != null) {
+                        live.finished.completeExceptionally(failure);
+                    } else {
+                        live.finished.complete(null);
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            log.warn("Failed to update card {}", messageId, failure);
+        }
+        if (flushNow) {
+            // 已关闭时直接发出关闭前提交的最后内容
+            patch(messageId, live);
+        }
+    }
+
+    /**
+     * 停止跟踪空闲超时的消息：没有待发或进行中的更新，且距最后一次更新已超过空闲时间
+     */
+    private synchronized void expireIdle() {
+        long now = System.nanoTime();
+        Iterator<LiveCard> it = cards.values().iterator();
+        while (it.hasNext()) {
+            LiveCard live = it.next();
+            if (!live.inFlight && now - live.lastPatchNanos >= idleTimeoutNanos) {
+                it.remove();
+                live.finished.complete(null);
+            }
+        }
+    }
+
+    /**
+     * 与 RetryPolicy.isRetryable 一致：网络异常、超时与限流等暂时性错误码
+     */
+    private static boolean isRetryable(Exception e) {
+        if (e instanceof LarkApiException) {
+            return LarkErrorCodes.isRetryable(((LarkApiException) e).getCode());
+        }
+        return e instanceof IOException || e instanceof TimeoutException;
+    }
+
+    private static final class LiveCard {
+        Map<String, Object> pending; // 等待发出的最新内容
+        boolean inFlight; // 已安排或正在进行更新
+        boolean finishing;
+        int failures; // 连续的暂时性失败次数
+        long lastPatchNanos;
+        final CompletableFuture<Void> finished = new CompletableFuture<>();
+    }
+
+    public static class Builder {
+        private final LarkBot bot;
+        private long minIntervalNanos = TimeUnit.SECONDS.toNanos(1);
+        private long idleTimeoutNanos = TimeUnit.MINUTES.toNanos(10);
+        private int threads = 2;
+
+        private Builder(LarkBot bot) {
+            this.bot = bot;
+        }
+
+        /**
+         * @param interval 同一条消息两次更新之间的最小间隔
+         * @param unit 间隔单位
+         */
+        public Builder minInterval(long interval, TimeUnit unit) {
+            this.minIntervalNanos = unit.toNanos(interval);
+            return this;
+        }
+
+        /**
+         * @param timeout 未调用finish的消息在最后一次更新后多久停止跟踪，之后的update按新消息处理
+         * @param unit 时间单位
+         */
+        public Builder idleTimeout(long timeout, TimeUnit unit) {
+            if (timeout <= 0) {
+                throw new IllegalArgumentException("idleTimeout must be positive");
+            }
+            this.idleTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * @param threads 发出更新请求的线程数，即同时更新的消息数上限
+         */
+        public Builder threads(int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("threads must be at least 1");
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        public CardUpdater build() {
+            return new CardUpdater(this);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.wayne.larkbot;
+
+import com.lark.oapi.Client;
+import com.lark.oapi.service.im.v1.model.ListChat;
+import com.lark.oapi.service.im.v1.model.ListChatReq;
+import com.lark.oapi.service.im.v1.model.ListChatResp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 机器人所在群组的内存目录。加载时遍历 im.chat.list 的所有分页，建立群名到chat_id的索引；
+ * 后台按TTL定期刷新，过期时先返回旧数据再异步刷新，并发加载只会发起一次请求。
+ */
+public class ChatDirectory {
+    private static final Logger log = LoggerFactory.getLogger(ChatDirectory.class);
+    private static final int PAGE_SIZE = 100;
+
+    private final Client client;
+    private volatile TenantTokenManager tokenManager; // 为null时由SDK自行获取凭证
+    private volatile ApiCaller caller = ApiCaller.DIRECT;
+    private final long ttlNanos;
+    private volatile Snapshot snapshot;
+    private CompletableFuture<Snapshot> loading; // 正在进行的加载，由this保护
+    private ScheduledExecutorService refresher; // 后台刷新线程，由this保护
+    private boolean closed; // 由this保护
+
+    /**
+     * @param client 飞书SDK客户端
+     * @param ttl 目录有效期
+     * @param unit 有效期单位
+     */
+    public ChatDirectory(Client client, long ttl, TimeUnit unit) {
+        this.client = client;
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    /**
+     * @param tokenManager 提供凭证的管理器，为null时由SDK自行获取
+     */
+    void setTenantTokenManager(TenantTokenManager tokenManager) {
+        this.tokenManager = tokenManager;
+    }
+
+    /**
+     * @param caller 发起SDK调用的方式，由LarkBot设置以记录指标
+     */
+    void setApiCaller(ApiCaller caller) {
+        this.caller = caller;
+    }
+
+    /**
+     * 根据群组名称查找chat_id
+     * @param groupName 群组名称
+     * @return 匹配群组名称的chat_id列表，没有匹配时为空列表
+     * @throws Exception 首次加载目录失败
+     */
+    public List<String> getChatIdsByName(String groupName) throws Exception {
+        List<String> chatIds = current().chatIdsByName.get(groupName);
+        return chatIds != null ? chatIds : Collections.emptyList();
+    }
+
+    /**
+     * @return 目录中的全部群组
+     * @throws Exception 首次加载目录失败
+     */
+    public List<ListChat> getChats() throws Exception {
+        return current().chats;
+    }
+
+    /**
+     * 立即重新加载目录，例如机器人刚被拉进新群时
+     * @throws Exception 加载失败
+     */
+    public void refresh() throws Exception {
+        join(load());
+    }
+
+    /**
+     * 丢弃已加载的目录，下次查询时重新加载
+     */
+    public void invalidate() {
+        snapshot = null;
+    }
+
+    /**
+     * 停止后台刷新；正在等待的加载以异常结束，之后需要加载目录的查询直接失败
+     */
+    public synchronized void close() {
+        closed = true;
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+        if (loading != null) {
+            // 排队中的加载任务已被丢弃，不会再完成这个Future
+            loading.completeExceptionally(new IllegalStateException("ChatDirectory is closed"));
+            loading = null;
+        }
+    }
+
+    private Snapshot current() throws Exception {
+        Snapshot snap = snapshot;
+        if (snap == null) {
+            return join(load());
+        }
+        if (System.nanoTime() - snap.loadedAtNanos > ttlNanos) {
+            // 过期时继续使用旧数据，由后台完成刷新
+            load();
+        }
+        return snap;
+    }
+
+    private synchronized CompletableFuture<Snapshot> load() {
+        if (closed) {
+            CompletableFuture<Snapshot> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("ChatDirectory is closed"));
+            return failed;
+        }
+        if (loading != null) {
+            return loading;
+        }
+        startRefresher();
+        CompletableFuture<Snapshot> future = new CompletableFuture<>();
+        loading = future;
+        refresher.execute(() -> {
+            try {
+                Snapshot loaded = fetchAll();
+                snapshot = loaded;
+                future.complete(loaded);
+            } catch (Throwable t) {
+                log.warn("Failed to load chat directory: {}", t.getMessage());
+                future.completeExceptionally(t);
+            } finally {
+                synchronized (ChatDirectory.this) {
+                    if (loading == future) {
+                        loading = null;
+                    }
+                }
+            }
+        });
+        return future;
+    }
+
+    private void startRefresher() {
+        if (refresher != null) {
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(LarkExecutors.daemonThreadFactory("lark-chat-directory"));
+        // 在过期前刷新，使查询始终命中内存
+        long period = Math.max(1, ttlNanos * 4 / 5);
+        refresher.scheduleWithFixedDelay(() -> {
+            if (snapshot != null) {
+                load();
+            }
+        }, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    private Snapshot fetchAll() throws Exception {
+        List<ListChat> chats = new ArrayList<>();
+        String pageToken = null;
+        do {
+            ListChatReq req = ListChatReq.newBuilder()
+                .pageSize(PAGE_SIZE)
+                .pageToken(pageToken)
+                .build();
+            ListChatResp resp = caller.call(LarkMetrics.LIST_CHATS,
+                () -> client.im().chat().list(req, TenantTokenManager.requestOptions(tokenManager)));
+            if (!resp.success()) {
+                throw new LarkApiException("list chats", resp.getCode(), resp.getMsg(), resp.getRequestId());
+            }
+            if (resp.getData().getItems() != null) {
+                chats.addAll(Arrays.asList(resp.getData().getItems()));
+            }
+            pageToken = Boolean.TRUE.equals(resp.getData().getHasMore()) ? resp.getData().getPageToken() : null;
+        } while (pageToken != null && !pageToken.isEmpty());
+        return new Snapshot(chats);
+    }
+
+    private static Snapshot join(CompletableFuture<Snapshot> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    private static class Snapshot {
+        final List<ListChat> chats;
+        final Map<String, List<String>> chatIdsByName;
+        final long loadedAtNanos;
+
+        Snapshot(List<ListChat> chats) {
+            this.chats = Collections.unmodifiableList(chats);
+            Map<String, List<String>> index = new HashMap<>();
+            for (ListChat chat : chats) {
+                if (chat.getName() != null) {
+                    index.computeIfAbsent(chat.getName(), name -> new ArrayList<>(1)).add(chat.getChatId());
+                }
+            }
+            index.replaceAll((name, ids) -> Collections.unmodifiableList(ids));
+            this.chatIdsByName = index;
+            this.loadedAtNanos = System.nanoTime();
+        }
+    }
+}
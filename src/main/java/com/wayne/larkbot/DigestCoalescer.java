@@ -0,0 +1,309 @@
+package com.wayne.larkbot;
+
+import com.lark.oapi.core.utils.Jsons;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 告警风暴合并：按chat_id缓冲文本消息，窗口到期或条数达到上限时合并为一条富文本（post）消息，
+ * 每条原始消息占一行，超出展示行数的部分以汇总行代替。窗口内只有一条消息时按原文本发送。
+ * 第一条消息最多延迟一个窗口发出。
+ */
+public class DigestCoalescer {
+    /** 飞书富文本消息体上限约30KB（按UTF-8编码后的字节计），留出余量 */
+    private static final int MAX_CONTENT_BYTES = 28 * 1024;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private final LarkBot bot;
+    private final long windowMillis;
+    private final int maxMessages;
+    private final int maxLines;
+    private final int maxLineLength;
+    private final String title;
+    private final ZoneId zone;
+    private final ScheduledExecutorService timer;
+    private final Map<String, Batch> batches = new HashMap<>(); // 由this保护
+    private boolean closed; // 由this保护
+
+    private DigestCoalescer(Builder builder) {
+        this.bot = builder.bot;
+        this.windowMillis = builder.windowMillis;
+        this.maxMessages = builder.maxMessages;
+        this.maxLines = builder.maxLines;
+        this.maxLineLength = builder.maxLineLength;
+        this.title = builder.title;
+        this.zone = builder.zone;
+        this.timer = Executors.newSingleThreadScheduledExecutor(LarkExecutors.daemonThreadFactory("lark-digest"));
+    }
+
+    /**
+     * @param bot 用于发送合并消息的机器人
+     * @return 构建器
+     */
+    public static Builder newBuilder(LarkBot bot) {
+        return new Builder(bot);
+    }
+
+    /**
+     * 把文本消息加入该群的缓冲区
+     * @param chatId 群组的chat_id
+     * @param text 文本消息
+     * @return 所在批次的发送结果，同一批次的调用方得到同一个结果
+     */
+    public CompletableFuture<SendResult> sendTextToChat(String chatId, String text) {
+        Batch full = null;
+        CompletableFuture<SendResult> result;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("DigestCoalescer is closed");
+            }
+            Batch batch = batches.get(chatId);
+            if (batch == null) {
+                Batch created = new Batch(chatId);
+                created.flushTask = timer.schedule(() -> flush(created), windowMillis, TimeUnit.MILLISECONDS);
+                batches.put(chatId, created);
+                batch = created;
+            }
+            batch.add(text, batch.lines.size() < maxLines ? formatLine(text) : null);
+            result = batch.result;
+            if (batch.count >= maxMessages) {
+                batches.remove(chatId);
+                batch.flushTask.cancel(false);
+                full = batch;
+            }
+        }
+        if (full != null) {
+            emit(full);
+        }
+        // 每个调用方拿到独立的Future，取消不会影响同批次的其他调用方
+        return result.thenApply(Function.identity());
+    }
+
+    /**
+     * 立即发出所有缓冲中的消息
+     */
+    public void flushAll() {
+        List<Batch> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(batches.values());
+            batches.clear();
+        }
+        for (Batch batch : pending) {
+            batch.flushTask.cancel(false);
+            emit(batch);
+        }
+    }
+
+    /**
+     * 发出缓冲中的消息并停止计时器
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        flushAll();
+        timer.shutdown();
+    }
+
+    private void flush(Batch batch) {
+        synchronized (this) {
+            if (batches.get(batch.chatId) != batch) {
+                return;
+            }
+            batches.remove(batch.chatId);
+        }
+        emit(batch);
+    }
+
+    private void emit(Batch batch) {
+        String msgType;
+        String content;
+        if (batch.count == 1) {
+            msgType = "text";
+            content = Jsons.DEFAULT.toJson(Collections.singletonMap("text", batch.firstText));
+        } else {
+            msgType = "post";
+            content = toPost(batch).toJson();
+        }
+        bot.sendMessageWithResultAsync("chat_id", batch.chatId, msgType, content, null)
+            .whenComplete((sent, error) -> batch.result.complete(
+                error == null ? sent : SendResult.failed(batch.chatId, LarkExecutors.unwrap(error))));
+    }
+
+    private PostBuilder toPost(Batch batch) {
+        String postTitle = String.format("%s（%d条）", title, batch.count);
+        PostBuilder post = new PostBuilder(postTitle);
+        // 预留标题、外层结构与末尾汇总行的字节数
+        int size = jsonUtf8Length(postTitle) + 256;
+        int shown = 0;
+        for (String line : batch.lines) {
+            // 每行除文本外还有标签、样式等约64字节的结构开销
+            size += jsonUtf8Length(line) + 64;
+            if (size > MAX_CONTENT_BYTES) {
+                break;
+            }
+            if (shown > 0) {
+                post.newLine();
+            }
+            post.text(line);
+            shown++;
+        }
+        int hidden = batch.count - shown;
+        if (hidden > 0) {
+            post.newLine().text(String.format("……另有 %d 条消息未展示", hidden), "italic");
+        }
+        return post;
+    }
+
+    /**
+     * 字符串写成JSON字符串值后的UTF-8字节数上界：中文等字符占3字节，需要转义的字符按最长的转义序列计6字节
+     */
+    private static int jsonUtf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c == '"' || c == '\\' || c == '<' || c == '>' || c == '&' || c == '=' || c == '\'') {
+                length += 6;
+            } else if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private String formatLine(String text) {
+        String time = TIME_FORMAT.format(Instant.now().atZone(zone));
+        if (text.length() > maxLineLength) {
+            int end = maxLineLength;
+            // 不在代理对中间截断，否则会留下孤立的高代理字符
+            if (Character.isHighSurrogate(text.charAt(end - 1))) {
+                end--;
+            }
+            text = text.substring(0, end) + "…";
+        }
+        return time + " " + text;
+    }
+
+    private static final class Batch {
+        final String chatId;
+        final List<String> lines = new ArrayList<>();
+        String firstText;
+        int count; // 含未保存展示行的总条数
+        final CompletableFuture<SendResult> result = new CompletableFuture<>();
+        ScheduledFuture<?> flushTask;
+
+        Batch(String chatId) {
+            this.chatId = chatId;
+        }
+
+        /**
+         * 只保存前maxLines条的展示行，其余只计数，使缓冲区大小有上界
+         * @param line 格式化后的展示行，超出展示条数时为null
+         */
+        void add(String text, String line) {
+            if (count == 0) {
+                firstText = text;
+            }
+            if (line != null) {
+                lines.add(line);
+            }
+            count++;
+        }
+    }
+
+    public static class Builder {
+        private final LarkBot bot;
+        private long windowMillis = 10000;
+        private int maxMessages = 100;
+        private int maxLines = 30;
+        private int maxLineLength = 200;
+        private String title = "消息汇总";
+        private ZoneId zone = ZoneId.systemDefault();
+
+        private Builder(LarkBot bot) {
+            this.bot = bot;
+        }
+
+        /**
+         * @param window 合并窗口，即第一条消息最多被延迟的时间
+         * @param unit 窗口单位
+         */
+        public Builder window(long window, TimeUnit unit) {
+            this.windowMillis = unit.toMillis(window);
+            return this;
+        }
+
+        /**
+         * @param maxMessages 缓冲条数达到该值时立即发出，不等窗口结束
+         */
+        public Builder maxMessages(int maxMessages) {
+            if (maxMessages < 1) {
+                throw new IllegalArgumentException("maxMessages must be at least 1");
+            }
+            this.maxMessages = maxMessages;
+            return this;
+        }
+
+        /**
+         * @param maxLines 合并消息中最多展示的原始消息条数，其余以汇总行代替
+         */
+        public Builder maxLines(int maxLines) {
+            if (maxLines < 1) {
+                throw new IllegalArgumentException("maxLines must be at least 1");
+            }
+            this.maxLines = maxLines;
+            return this;
+        }
+
+        /**
+         * @param maxLineLength 每条原始消息展示的最大字符数
+         */
+        public Builder maxLineLength(int maxLineLength) {
+            if (maxLineLength < 1) {
+                throw new IllegalArgumentException("maxLineLength must be at least 1");
+            }
+            this.maxLineLength = maxLineLength;
+            return this;
+        }
+
+        /**
+         * @param title 合并消息的标题，后面会附上条数
+         */
+        public Builder title(String title) {
+            this.title = title;
+            return this;
+        }
+
+        /**
+         * @param zone 每行时间前缀使用的时区
+         */
+        public Builder zone(ZoneId zone) {
+            this.zone = zone;
+            return this;
+        }
+
+        public DigestCoalescer build() {
+            return new DigestCoalescer(this);
+        }
+    }
+}
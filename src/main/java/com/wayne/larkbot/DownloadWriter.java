@@ -0,0 +1,173 @@
+package com.wayne.larkbot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 把下载得到的响应体分块写入通道：流式响应经固定大小的缓冲区边读边写，占用的堆内存与文件大小无关；
+ * SDK已缓冲的响应体直接传出内部数组，不再额外复制
+ */
+final class DownloadWriter {
+    /** 单次写入通道的最大字节数，也是流式读取的缓冲区大小 */
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private DownloadWriter() {
+    }
+
+    /**
+     * 响应体，写入时可同时更新摘要
+     */
+    interface Body {
+        /**
+         * @param channel 目标通道
+         * @param digest 同时更新的摘要，可为null
+         * @return 写入的字节数
+         */
+        long copyTo(WritableByteChannel channel, MessageDigest digest) throws IOException;
+    }
+
+    /**
+     * 处理响应体，流式响应只在处理期间可读
+     */
+    interface BodyHandler<T> {
+        T handle(Body body) throws IOException;
+    }
+
+    /**
+     * @param in 未读取的响应流，由调用方关闭
+     */
+    static Body of(InputStream in) {
+        return (channel, digest) -> copy(in, channel, digest);
+    }
+
+    /**
+     * @param body SDK返回的已缓冲的响应体
+     */
+    static Body of(ByteArrayOutputStream body) {
+        return (channel, digest) -> {
+            ChunkedChannelStream out = new ChunkedChannelStream(channel, digest);
+            // writeTo直接传出内部数组，避免toByteArray复制
+            body.writeTo(out);
+            return out.written;
+        };
+    }
+
+    /**
+     * 经固定大小的缓冲区把输入流写入通道
+     * @param in 输入流，不会被关闭
+     * @param channel 目标通道
+     * @param digest 同时更新的摘要，可为null
+     * @return 写入的字节数
+     */
+    static long copy(InputStream in, WritableByteChannel channel, MessageDigest digest) throws IOException {
+        byte[] buffer = new byte[CHUNK_SIZE];
+        long written = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (digest != null) {
+                digest.update(buffer, 0, read);
+            }
+            ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+            while (chunk.hasRemaining()) {
+                channel.write(chunk);
+            }
+            written += read;
+        }
+        return written;
+    }
+
+    /**
+     * 把响应体写入输出流
+     * @param body 响应体
+     * @param out 目标输出流，不会被关闭
+     * @return 写入的字节数
+     */
+    static long copy(Body body, OutputStream out) throws IOException {
+        return body.copyTo(Channels.newChannel(out), null);
+    }
+
+    /**
+     * 先写入同目录下的临时文件，校验通过后原子重命名为目标文件
+     * @param body 响应体
+     * @param target 目标文件
+     * @param expectedSha256 期望的SHA-256十六进制摘要，为null时不校验
+     * @return 文件内容的SHA-256十六进制摘要
+     * @throws IOException 写入失败或摘要不匹配，此时目标文件保持不变
+     */
+    static String writeAtomically(Body body, Path target, String expectedSha256) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, target.getFileName().toString(), ".part");
+        try {
+            MessageDigest digest = newSha256();
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                body.copyTo(channel, digest);
+                channel.force(true);
+            }
+            String actual = UploadCache.toHex(digest.digest());
+            if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(actual)) {
+                throw new IOException(String.format("Checksum mismatch for %s: expected %s, got %s",
+                    target, expectedSha256, actual));
+            }
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return actual;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class ChunkedChannelStream extends OutputStream {
+        private final WritableByteChannel channel;
+        private final MessageDigest digest;
+        private long written;
+
+        ChunkedChannelStream(WritableByteChannel channel, MessageDigest digest) {
+            this.channel = channel;
+            this.digest = digest;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (digest != null) {
+                digest.update(bytes, offset, length);
+            }
+            for (int pos = offset, end = offset + length; pos < end; pos += CHUNK_SIZE) {
+                ByteBuffer chunk = ByteBuffer.wrap(bytes, pos, Math.min(CHUNK_SIZE, end - pos));
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+            }
+            written += length;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.wayne.larkbot;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 重复消息过滤：以 (receive_id, msg_type, content) 的64位指纹识别重复消息，在时间窗口内只放行第一条。
+ * 指纹保存在若干代轮换的开放寻址long数组中，不装箱；每经过 窗口/代数 的时间或当前代写满时，
+ * 清空最旧的一代并作为新的当前代，因此一条指纹的有效期在 窗口*(代数-1)/代数 到 窗口 之间。
+ * 只能识别同一进程内的重复，多个进程需共用同一个发送方才能去重。
+ */
+public class DuplicateSuppressor {
+    static final int GENERATIONS = 4;
+    /** 0 表示空槽位，真实指纹为0时替换为该值 */
+    private static final long ZERO_REPLACEMENT = 0x9E3779B97F4A7C15L;
+
+    private final long generationNanos;
+    private final int generationCapacity;
+    private final long[][] tables = new long[GENERATIONS][]; // 由this保护
+    private final int[] sizes = new int[GENERATIONS]; // 由this保护
+    private int current; // 由this保护
+    private long rotatedAtNanos; // 由this保护
+    private long hits; // 由this保护
+    private long misses; // 由this保护
+
+    /**
+     * @param window 去重窗口
+     * @param unit 窗口单位
+     * @param maxEntries 窗口内最多记录的指纹数，决定内存占用：每代的表长为其容量的两倍向上取2的幂，
+     *                   共 maxEntries * 16 到 maxEntries * 32 字节
+     */
+    public DuplicateSuppressor(long window, TimeUnit unit, int maxEntries) {
+        if (maxEntries < GENERATIONS) {
+            throw new IllegalArgumentException("maxEntries must be at least " + GENERATIONS);
+        }
+        this.generationNanos = Math.max(1, unit.toNanos(window) / GENERATIONS);
+        this.generationCapacity = maxEntries / GENERATIONS;
+        // 装载因子不超过0.5，保证线性探测的探测长度较短
+        int tableSize = Integer.highestOneBit(Math.max(2, generationCapacity * 2 - 1)) << 1;
+        for (int i = 0; i < GENERATIONS; i++) {
+            tables[i] = new long[tableSize];
+        }
+        this.rotatedAtNanos = System.nanoTime();
+    }
+
+    /**
+     * 记录一条消息
+     * @return 窗口内第一次出现时返回true，重复时返回false
+     */
+    public boolean tryAcquire(String receiveId, String msgType, String content) {
+        return tryAcquire(fingerprint(receiveId, msgType, content));
+    }
+
+    /**
+     * 删除一条消息的记录，例如发送失败后允许调用方立即重发
+     */
+    public void release(String receiveId, String msgType, String content) {
+        release(fingerprint(receiveId, msgType, content));
+    }
+
+    synchronized boolean tryAcquire(long fingerprint) {
+        rotateIfExpired();
+        for (int i = 0; i < GENERATIONS; i++) {
+            if (indexOf(tables[i], fingerprint) >= 0) {
+                hits++;
+                return false;
+            }
+        }
+        if (sizes[current] >= generationCapacity) {
+            // 当前代写满时提前轮换，以缩短窗口为代价保持内存有界
+            rotate();
+        }
+        insert(tables[current], fingerprint);
+        sizes[current]++;
+        misses++;
+        return true;
+    }
+
+    /**
+     * 记录一次没有经过 tryAcquire 的拦截，例如等待同一条消息的并发发送成功后判定为重复
+     */
+    synchronized void recordHit() {
+        hits++;
+    }
+
+    synchronized void release(long fingerprint) {
+        for (int i = 0; i < GENERATIONS; i++) {
+            if (remove(tables[i], fingerprint)) {
+                sizes[i]--;
+            }
+        }
+    }
+
+    /**
+     * @return 被判定为重复而拦截的次数
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return 首次出现而放行的次数
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return 当前记录的指纹数
+     */
+    public synchronized int size() {
+        int total = 0;
+        for (int size : sizes) {
+            total += size;
+        }
+        return total;
+    }
+
+    /**
+     * 计算消息指纹：逐字符混合三个字段，字段之间加入分隔，最后做一次雪崩混合
+     */
+    static long fingerprint(String receiveId, String msgType, String content) {
+        long h = 0xCBF29CE484222325L;
+        h = mix(h, receiveId);
+        h = mix(h, msgType);
+        h = mix(h, content);
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h != 0 ? h : ZERO_REPLACEMENT;
+    }
+
+    private static long mix(long h, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        // 字段分隔，避免 ("ab", "c") 与 ("a", "bc") 得到相同指纹
+        return (h ^ 0xFFFF) * 0x100000001B3L;
+    }
+
+    private void rotateIfExpired() {
+        long now = System.nanoTime();
+        long elapsed = (now - rotatedAtNanos) / generationNanos;
+        for (long i = 0; i < Math.min(elapsed, GENERATIONS); i++) {
+            rotate();
+        }
+        if (elapsed > 0) {
+            rotatedAtNanos = now;
+        }
+    }
+
+    private void rotate() {
+        current = (current + 1) % GENERATIONS;
+        if (sizes[current] > 0) {
+            Arrays.fill(tables[current], 0L);
+            sizes[current] = 0;
+        }
+    }
+
+    private static int indexOf(long[] table, long fingerprint) {
+        int mask = table.length - 1;
+        for (int i = (int) fingerprint & mask; ; i = (i + 1) & mask) {
+            long slot = table[i];
+            if (slot == fingerprint) {
+                return i;
+            }
+            if (slot == 0) {
+                return -1;
+            }
+        }
+    }
+
+    private static void insert(long[] table, long fingerprint) {
+        int mask = table.length - 1;
+        int i = (int) fingerprint & mask;
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = fingerprint;
+    }
+
+    /**
+     * 线性探测的删除：把后续同一探测链上的元素前移填补空位，不使用墓碑
+     */
+    private static boolean remove(long[] table, long fingerprint) {
+        int index = indexOf(table, fingerprint);
+        if (index < 0) {
+            return false;
+        }
+        int mask = table.length - 1;
+        int gap = index;
+        for (int i = (gap + 1) & mask; table[i] != 0; i = (i + 1) & mask) {
+            int home = (int) table[i] & mask;
+            // home 不在 (gap, i] 区间内时，元素可以移到空位
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                table[gap] = table[i];
+                gap = i;
+            }
+        }
+        table[gap] = 0;
+        return true;
+    }
+}
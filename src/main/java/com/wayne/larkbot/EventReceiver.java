@@ -0,0 +1,479 @@
+package com.wayne.larkbot;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.lark.oapi.card.CardActionHandler;
+import com.lark.oapi.card.model.CardAction;
+import com.lark.oapi.core.request.EventReq;
+import com.lark.oapi.core.response.EventResp;
+import com.lark.oapi.event.CustomEventHandler;
+import com.lark.oapi.event.EventDispatcher;
+import com.lark.oapi.event.model.Header;
+import com.lark.oapi.service.im.ImService;
+import com.lark.oapi.service.im.v1.model.P2MessageReceiveV1;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 事件与卡片回调接收器：内嵌HTTP服务，由SDK的EventDispatcher完成签名校验、解密与URL验证。
+ * 事件处理器不在请求线程中执行，校验通过后立即返回200，事件交给工作线程池异步处理，
+ * 慢处理器不会导致平台超时重推。平台重推的事件按event_id去重；
+ * 待处理事件数达到上限时返回503，由平台稍后重推。卡片回调需要同步返回卡片内容，在请求线程中执行。
+ */
+public class EventReceiver {
+    private static final Logger log = LoggerFactory.getLogger(EventReceiver.class);
+    private static final byte[] BUSY_BODY = "{\"msg\":\"busy\"}".getBytes(StandardCharsets.UTF_8);
+    // 当前请求中是否有事件因队列已满被拒绝，由请求线程在dispatch期间设置
+    private static final ThreadLocal<boolean[]> REJECTED = ThreadLocal.withInitial(() -> new boolean[1]);
+
+    private final EventDispatcher eventDispatcher;
+    private final CardActionHandler cardActionHandler;
+    private final String host;
+    private final int port;
+    private final String eventPath;
+    private final String cardPath;
+    private final int ioThreads;
+    private final ExecutorService workers;
+    private final boolean ownsWorkers;
+    private final int maxPending;
+    private final DuplicateSuppressor seenEvents;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private HttpServer server; // 由this保护
+    private ExecutorService ioExecutor; // 由this保护
+
+    private EventReceiver(Builder builder) {
+        this.host = builder.host;
+        this.port = builder.port;
+        this.eventPath = builder.eventPath;
+        this.cardPath = builder.cardPath;
+        this.ioThreads = builder.ioThreads;
+        this.workers = builder.workers != null ? builder.workers : LarkExecutors.newDefaultExecutor();
+        this.ownsWorkers = builder.workers == null;
+        this.maxPending = builder.maxPending;
+        this.seenEvents = new DuplicateSuppressor(builder.dedupWindowMillis, TimeUnit.MILLISECONDS, builder.dedupMaxEntries);
+
+        if (builder.messageHandler != null || !builder.customHandlers.isEmpty()) {
+            EventDispatcher.Builder dispatcher = EventDispatcher.newBuilder(builder.verificationToken, builder.encryptKey);
+            EventHandler<P2MessageReceiveV1> messageHandler = builder.messageHandler;
+            if (messageHandler != null) {
+                dispatcher.onP2MessageReceiveV1(new ImService.P2MessageReceiveV1Handler() {
+                    @Override
+                    public void handle(P2MessageReceiveV1 event) {
+                        Header header = event.getHeader();
+                        submit(header != null ? header.getEventId() : null, () -> messageHandler.handle(event));
+                    }
+                });
+            }
+            for (Map.Entry<String, EventHandler<EventReq>> entry : builder.customHandlers.entrySet()) {
+                EventHandler<EventReq> handler = entry.getValue();
+                dispatcher.onCustomizedEvent(entry.getKey(), new CustomEventHandler() {
+                    @Override
+                    public void handle(EventReq event) {
+                        submit(eventId(event.getBody()), () -> handler.handle(event));
+                    }
+                });
+            }
+            this.eventDispatcher = dispatcher.build();
+        } else {
+            this.eventDispatcher = null;
+        }
+        Function<CardAction, Object> cardHandler = builder.cardHandler;
+        this.cardActionHandler = cardHandler == null ? null : CardActionHandler.newBuilder(
+            builder.verificationToken, builder.encryptKey, cardAction -> {
+                received.increment();
+                return cardHandler.apply(cardAction);
+            }).build();
+    }
+
+    /**
+     * @param verificationToken 开发者后台“事件订阅”中的 Verification Token
+     * @param encryptKey 开发者后台“事件订阅”中的 Encrypt Key，未开启加密时传空字符串，此时不校验签名
+     * @return 构建器
+     */
+    public static Builder newBuilder(String verificationToken, String encryptKey) {
+        return new Builder(verificationToken, encryptKey);
+    }
+
+    /**
+     * 启动HTTP服务
+     * @throws IOException 端口绑定失败
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("EventReceiver is already started");
+        }
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress(host, port), 0);
+        httpServer.createContext(eventPath, this::handle);
+        if (!cardPath.equals(eventPath)) {
+            httpServer.createContext(cardPath, this::handle);
+        }
+        ioExecutor = Executors.newFixedThreadPool(ioThreads, LarkExecutors.daemonThreadFactory("lark-event-http"));
+        httpServer.setExecutor(ioExecutor);
+        httpServer.start();
+        server = httpServer;
+        log.info("Event receiver listening on {}:{} (events {}, cards {})", host, getPort(), eventPath, cardPath);
+    }
+
+    /**
+     * 停止HTTP服务；由接收器创建的工作线程池会在已提交的事件处理完后关闭
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            ioExecutor.shutdown();
+            server = null;
+        }
+        if (ownsWorkers) {
+            workers.shutdown();
+        }
+    }
+
+    /**
+     * @return 实际监听的端口，构建时指定端口0时由系统分配
+     */
+    public synchronized int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    /**
+     * 处理一次回调请求，与HTTP服务收到请求时的处理相同，可用于本地回放录制的事件。
+     * 未配置Encrypt Key时不校验签名，直接传入明文事件即可
+     * @param path 请求路径，决定按事件还是卡片回调处理
+     * @param headers 请求头
+     * @param body 请求体
+     * @return 返回给平台的响应
+     */
+    public EventResp dispatch(String path, Map<String, List<String>> headers, byte[] body) throws Throwable {
+        EventReq req = new EventReq();
+        req.setHeaders(headers);
+        req.setBody(body);
+        req.setHttpPath(path);
+        boolean[] rejectedFlag = REJECTED.get();
+        rejectedFlag[0] = false;
+        EventResp resp;
+        if (path.equals(cardPath) && cardActionHandler != null) {
+            resp = cardActionHandler.handle(req);
+        } else if (path.equals(eventPath) && eventDispatcher != null) {
+            resp = eventDispatcher.handle(req);
+        } else {
+            return response(404, new byte[0]);
+        }
+        if (rejectedFlag[0]) {
+            return response(503, BUSY_BODY);
+        }
+        return resp;
+    }
+
+    /**
+     * 把录制的事件请求体按事件回调处理一次，用于本地测试
+     * @param payload 保存事件请求体的文件
+     * @return 返回给平台的响应
+     */
+    public EventResp replay(Path payload) throws Throwable {
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.put("Content-Type", Collections.singletonList("application/json"));
+        return dispatch(eventPath, headers, Files.readAllBytes(payload));
+    }
+
+    /**
+     * @return 收到的事件与卡片回调数，含重复事件
+     */
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    /**
+     * @return 因event_id重复而忽略的事件数
+     */
+    public long getDuplicateCount() {
+        return duplicates.sum();
+    }
+
+    /**
+     * @return 因待处理事件过多返回503的事件数
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return 处理器抛出异常的事件数
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * @return 已接收但尚未处理完的事件数
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        boolean headersSent = false;
+        try {
+            // HttpServer会改写请求头名的大小写，改为大小写不敏感的查找
+            Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            headers.putAll(exchange.getRequestHeaders());
+            EventResp resp = dispatch(exchange.getRequestURI().getPath(), headers, readAll(exchange.getRequestBody()));
+            if (resp.getHeaders() != null) {
+                for (Map.Entry<String, List<String>> header : resp.getHeaders().entrySet()) {
+                    exchange.getResponseHeaders().put(header.getKey(), header.getValue());
+                }
+            }
+            byte[] body = resp.getBody() != null ? resp.getBody() : new byte[0];
+            exchange.sendResponseHeaders(resp.getStatusCode(), body.length > 0 ? body.length : -1);
+            headersSent = true;
+            if (body.length > 0) {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        } catch (Throwable e) {
+            log.error("Failed to handle callback {}", exchange.getRequestURI(), e);
+            // 响应头已发出时无法再改状态码，关闭连接即可
+            if (!headersSent) {
+                exchange.sendResponseHeaders(500, -1);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * 去重并提交到工作线程池；待处理事件过多或线程池拒绝时撤销去重记录，使平台重推的同一事件可以再次处理
+     */
+    private void submit(String eventId, Task task) {
+        received.increment();
+        long fingerprint = eventId != null ? DuplicateSuppressor.fingerprint(eventId, "", "") : 0;
+        if (eventId != null && !seenEvents.tryAcquire(fingerprint)) {
+            duplicates.increment();
+            log.debug("Ignoring redelivered event {}", eventId);
+            return;
+        }
+        if (pending.incrementAndGet() > maxPending) {
+            reject(eventId, fingerprint);
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    failed.increment();
+                    log.error("Event handler failed for event {}", eventId, e);
+                } finally {
+                    pending.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            reject(eventId, fingerprint);
+        }
+    }
+
+    private void reject(String eventId, long fingerprint) {
+        pending.decrementAndGet();
+        if (eventId != null) {
+            seenEvents.release(fingerprint);
+        }
+        rejected.increment();
+        REJECTED.get()[0] = true;
+        log.warn("Event backlog is full ({} pending), rejecting event {}", maxPending, eventId);
+    }
+
+    /**
+     * 从明文事件中取出事件ID：2.0事件为 header.event_id，1.0事件为 uuid
+     */
+    private static String eventId(byte[] body) {
+        try {
+            JsonObject json = JsonParser.parseString(new String(body, StandardCharsets.UTF_8)).getAsJsonObject();
+            JsonElement header = json.get("header");
+            if (header != null && header.isJsonObject() && header.getAsJsonObject().has("event_id")) {
+                return header.getAsJsonObject().get("event_id").getAsString();
+            }
+            return json.has("uuid") ? json.get("uuid").getAsString() : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static EventResp response(int status, byte[] body) {
+        EventResp resp = new EventResp();
+        resp.setStatusCode(status);
+        resp.setBody(body);
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", Collections.singletonList("application/json; charset=utf-8"));
+        resp.setHeaders(headers);
+        return resp;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 事件处理器，在工作线程中执行
+     * @param <T> 事件类型
+     */
+    public interface EventHandler<T> {
+        void handle(T event) throws Exception;
+    }
+
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    public static class Builder {
+        private final String verificationToken;
+        private final String encryptKey;
+        private String host = "0.0.0.0";
+        private int port = 8080;
+        private String eventPath = "/webhook/event";
+        private String cardPath = "/webhook/card";
+        private int ioThreads = 4;
+        private ExecutorService workers;
+        private int maxPending = 10000;
+        private long dedupWindowMillis = TimeUnit.HOURS.toMillis(6);
+        private int dedupMaxEntries = 1 << 18;
+        private EventHandler<P2MessageReceiveV1> messageHandler;
+        private final Map<String, EventHandler<EventReq>> customHandlers = new LinkedHashMap<>();
+        private Function<CardAction, Object> cardHandler;
+
+        private Builder(String verificationToken, String encryptKey) {
+            this.verificationToken = verificationToken;
+            this.encryptKey = encryptKey;
+        }
+
+        /**
+         * @param host 监听地址
+         * @param port 监听端口，0表示由系统分配
+         */
+        public Builder listen(String host, int port) {
+            this.host = host;
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * @param eventPath 事件订阅的请求地址路径
+         * @param cardPath 卡片回调的请求地址路径
+         */
+        public Builder paths(String eventPath, String cardPath) {
+            this.eventPath = eventPath;
+            this.cardPath = cardPath;
+            return this;
+        }
+
+        /**
+         * @param ioThreads 读取请求、校验签名并应答的线程数
+         */
+        public Builder ioThreads(int ioThreads) {
+            if (ioThreads < 1) {
+                throw new IllegalArgumentException("ioThreads must be at least 1");
+            }
+            this.ioThreads = ioThreads;
+            return this;
+        }
+
+        /**
+         * @param workers 执行事件处理器的线程池，生命周期由调用方管理；不设置时使用 LarkExecutors.newDefaultExecutor()
+         */
+        public Builder workers(ExecutorService workers) {
+            this.workers = workers;
+            return this;
+        }
+
+        /**
+         * @param maxPending 已接收但尚未处理完的事件数上限，超出时返回503
+         */
+        public Builder maxPending(int maxPending) {
+            if (maxPending < 1) {
+                throw new IllegalArgumentException("maxPending must be at least 1");
+            }
+            this.maxPending = maxPending;
+            return this;
+        }
+
+        /**
+         * @param window 记住已处理event_id的时间，应覆盖平台的重推间隔
+         * @param unit 时间单位
+         * @param maxEntries 最多记住的event_id数
+         */
+        public Builder dedup(long window, TimeUnit unit, int maxEntries) {
+            if (window <= 0) {
+                throw new IllegalArgumentException("dedup window must be positive");
+            }
+            if (maxEntries < DuplicateSuppressor.GENERATIONS) {
+                throw new IllegalArgumentException("dedup maxEntries must be at least " + DuplicateSuppressor.GENERATIONS);
+            }
+            this.dedupWindowMillis = unit.toMillis(window);
+            this.dedupMaxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * @param handler 接收消息事件（im.message.receive_v1）的处理器
+         */
+        public Builder onMessageReceive(EventHandler<P2MessageReceiveV1> handler) {
+            this.messageHandler = handler;
+            return this;
+        }
+
+        /**
+         * @param eventType 事件类型，例如 "im.chat.member.bot.added_v1"
+         * @param handler 处理器，收到的是解密后的原始请求
+         */
+        public Builder onEvent(String eventType, EventHandler<EventReq> handler) {
+            customHandlers.put(eventType, handler);
+            return this;
+        }
+
+        /**
+         * 卡片回调需在3秒内返回新的卡片内容（返回null表示不更新卡片），处理器在请求线程中执行，应只做轻量工作
+         * @param handler 卡片回调处理器
+         */
+        public Builder onCardAction(Function<CardAction, Object> handler) {
+            this.cardHandler = handler;
+            return this;
+        }
+
+        public EventReceiver build() {
+            return new EventReceiver(this);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.wayne.larkbot;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * 上传前的图片预处理：把长边缩放到指定尺寸以内、重新编码并去掉元数据（EXIF等）。
+ * ImageIO无法解码的图片与多帧图片（如动态GIF）不做处理，按原文件上传，以免动图被替换为第一帧的静态图。
+ * 处理结果按 "源文件摘要-参数" 命名保存在缓存目录中，同一张图片重复发送时不会重复处理。
+ */
+public class ImagePreprocessor {
+    private final int maxDimension;
+    private final String format;
+    private final float quality;
+    private final Path cacheDir;
+    private final String tag;
+
+    private ImagePreprocessor(Builder builder) {
+        this.maxDimension = builder.maxDimension;
+        this.format = builder.format;
+        this.quality = builder.quality;
+        this.cacheDir = builder.cacheDir;
+        this.tag = String.format(Locale.ROOT, "%d-%s-q%d", maxDimension, format, Math.round(quality * 100));
+    }
+
+    /**
+     * @param cacheDir 保存处理结果的目录，不存在时自动创建
+     * @return 构建器
+     */
+    public static Builder newBuilder(Path cacheDir) {
+        return new Builder(cacheDir);
+    }
+
+    /**
+     * 处理图片
+     * @param source 原始图片路径
+     * @return 处理后的图片路径；ImageIO无法解码的格式与多帧图片原样返回
+     * @throws IOException 读写图片失败
+     */
+    public Path process(Path source) throws IOException {
+        return process(source, UploadCache.digest(source));
+    }
+
+    /**
+     * @param source 原始图片路径
+     * @param sourceDigest 原始图片的SHA-256摘要
+     * @return 处理后的图片路径
+     * @throws IOException 读写图片失败
+     */
+    Path process(Path source, String sourceDigest) throws IOException {
+        Path target = cacheDir.resolve(sourceDigest + "-" + tag + "." + format);
+        if (Files.isRegularFile(target)) {
+            return target;
+        }
+
+        BufferedImage image = readSingleFrame(source);
+        if (image == null) {
+            return source;
+        }
+        BufferedImage output = resize(image);
+
+        Files.createDirectories(cacheDir);
+        Path tmp = Files.createTempFile(cacheDir, target.getFileName().toString(), ".part");
+        try {
+            // 即使重新编码后更大也使用编码结果：原文件可能带有EXIF、GPS等元数据，且格式可能与目标扩展名不符
+            write(output, tmp);
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return target;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * 读取单帧图片；ImageIO.read 对动态GIF只返回第一帧，因此先检查帧数
+     * @return 解码结果，无法解码或包含多帧时返回null
+     */
+    private static BufferedImage readSingleFrame(Path source) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, false);
+                if (reader.getNumImages(true) > 1) {
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * @return 区分处理参数的标签，参数不同的处理结果不会共用缓存
+     */
+    String getTag() {
+        return tag;
+    }
+
+    private BufferedImage resize(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean opaque = !"png".equals(format);
+        int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        int longSide = Math.max(width, height);
+        if (longSide <= maxDimension && (!opaque || !image.getColorModel().hasAlpha())) {
+            return image;
+        }
+
+        // 逐次减半后再缩放到目标尺寸，避免一次大比例缩小时的锯齿
+        double scale = Math.min(1.0, (double) maxDimension / longSide);
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        BufferedImage current = image;
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            current = draw(current, width, height, type, opaque);
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height, int type, boolean opaque) {
+        BufferedImage target = new BufferedImage(width, height, type);
+        Graphics2D g = target.createGraphics();
+        try {
+            if (opaque) {
+                // JPEG不支持透明通道，透明区域铺白色
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, width, height);
+            }
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private void write(BufferedImage image, Path target) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IOException("No ImageIO writer for format: " + format);
+        }
+        ImageWriter writer = writers.next();
+        try (OutputStream file = Files.newOutputStream(target);
+             ImageOutputStream out = ImageIO.createImageOutputStream(file)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if ("png".equals(format)) {
+                    // PNG为无损压缩，使用最高压缩级别
+                    param.setCompressionQuality(0f);
+                } else {
+                    param.setCompressionQuality(quality);
+                }
+            }
+            // 只写入像素数据，不带源文件的元数据
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    public static class Builder {
+        private final Path cacheDir;
+        private int maxDimension = 2048;
+        private String format = "jpg";
+        private float quality = 0.85f;
+
+        private Builder(Path cacheDir) {
+            this.cacheDir = cacheDir;
+        }
+
+        /**
+         * @param maxDimension 输出图片长边的最大像素数
+         */
+        public Builder maxDimension(int maxDimension) {
+            if (maxDimension < 1) {
+                throw new IllegalArgumentException("maxDimension must be positive");
+            }
+            this.maxDimension = maxDimension;
+            return this;
+        }
+
+        /**
+         * @param format 输出格式，"jpg" 或 "png"；截图中文字较多时 png 更清晰
+         */
+        public Builder format(String format) {
+            String normalized = format.toLowerCase(Locale.ROOT);
+            if ("jpeg".equals(normalized)) {
+                normalized = "jpg";
+            }
+            if (!"jpg".equals(normalized) && !"png".equals(normalized)) {
+                throw new IllegalArgumentException("Unsupported format: " + format);
+            }
+            this.format = normalized;
+            return this;
+        }
+
+        /**
+         * @param quality JPEG压缩质量，0到1之间
+         */
+        public Builder quality(float quality) {
+            if (quality <= 0 || quality > 1) {
+                throw new IllegalArgumentException("quality must be in (0, 1]");
+            }
+            this.quality = quality;
+            return this;
+        }
+
+        public ImagePreprocessor build() {
+            return new ImagePreprocessor(this);
+        }
+    }
+}
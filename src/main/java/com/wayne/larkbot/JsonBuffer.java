@@ -0,0 +1,109 @@
+package com.wayne.larkbot;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 可复用的JSON输出缓冲区，配合JsonWriter流式写出消息内容，避免反射序列化和中间对象
+ */
+final class JsonBuffer extends Writer {
+    private final StringBuilder buffer;
+
+    JsonBuffer(int initialCapacity) {
+        this.buffer = new StringBuilder(initialCapacity);
+    }
+
+    /**
+     * 清空缓冲区以便复用，并按预计大小扩容
+     * @param expectedSize 预计写出的字符数
+     * @return 写入该缓冲区的JsonWriter
+     */
+    JsonWriter reset(int expectedSize) {
+        buffer.setLength(0);
+        buffer.ensureCapacity(expectedSize);
+        JsonWriter writer = new JsonWriter(this);
+        // 与Gson默认行为一致，省略值为null的字段
+        writer.setSerializeNulls(false);
+        return writer;
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) {
+        buffer.append(chars, offset, length);
+    }
+
+    @Override
+    public void write(int c) {
+        buffer.append((char) c);
+    }
+
+    @Override
+    public void write(String str, int offset, int length) {
+        buffer.append(str, offset, offset + length);
+    }
+
+    @Override
+    public Writer append(CharSequence csq) {
+        buffer.append(csq);
+        return this;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public String toString() {
+        return buffer.toString();
+    }
+
+    /**
+     * 写出由Map、List、字符串、数字和布尔值组成的树
+     * @param writer JsonWriter
+     * @param value 要写出的值
+     * @throws IllegalArgumentException 树中包含其他类型的对象
+     */
+    static void writeValue(JsonWriter writer, Object value) {
+        try {
+            writeValueUnchecked(writer, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeValueUnchecked(JsonWriter writer, Object value) throws IOException {
+        if (value == null) {
+            writer.nullValue();
+        } else if (value instanceof String) {
+            writer.value((String) value);
+        } else if (value instanceof Boolean) {
+            writer.value((Boolean) value);
+        } else if (value instanceof Number) {
+            writer.value((Number) value);
+        } else if (value instanceof Map) {
+            writer.beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                writer.name(String.valueOf(entry.getKey()));
+                writeValueUnchecked(writer, entry.getValue());
+            }
+            writer.endObject();
+        } else if (value instanceof List) {
+            writer.beginArray();
+            for (Object item : (List<?>) value) {
+                writeValueUnchecked(writer, item);
+            }
+            writer.endArray();
+        } else {
+            throw new IllegalArgumentException("Unsupported JSON value type: " + value.getClass().getName());
+        }
+    }
+}
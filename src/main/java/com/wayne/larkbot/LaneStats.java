@@ -0,0 +1,74 @@
+package com.wayne.larkbot;
+
+/**
+ * 出站调度器中单个优先级队列的统计快照
+ */
+public class LaneStats {
+    private final OutboundScheduler.Priority priority;
+    private final int queueDepth;
+    private final long submittedCount;
+    private final long dispatchedCount;
+    private final long rejectedCount;
+    private final long totalWaitNanos;
+    private final long maxWaitNanos;
+
+    LaneStats(OutboundScheduler.Priority priority, int queueDepth, long submittedCount, long dispatchedCount,
+              long rejectedCount, long totalWaitNanos, long maxWaitNanos) {
+        this.priority = priority;
+        this.queueDepth = queueDepth;
+        this.submittedCount = submittedCount;
+        this.dispatchedCount = dispatchedCount;
+        this.rejectedCount = rejectedCount;
+        this.totalWaitNanos = totalWaitNanos;
+        this.maxWaitNanos = maxWaitNanos;
+    }
+
+    public OutboundScheduler.Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return 当前排队等待发送的消息数
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount;
+    }
+
+    /**
+     * @return 已出队开始发送的消息数
+     */
+    public long getDispatchedCount() {
+        return dispatchedCount;
+    }
+
+    /**
+     * @return 因队列已满被拒绝的消息数
+     */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * @return 已出队消息的平均排队时间，毫秒
+     */
+    public double getAverageWaitMillis() {
+        return dispatchedCount > 0 ? totalWaitNanos / 1e6 / dispatchedCount : 0;
+    }
+
+    /**
+     * @return 已出队消息的最长排队时间，毫秒
+     */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LaneStats{priority=%s, depth=%d, submitted=%d, dispatched=%d, rejected=%d, avgWait=%.1fms, maxWait=%.1fms}",
+            priority, queueDepth, submittedCount, dispatchedCount, rejectedCount, getAverageWaitMillis(), getMaxWaitMillis());
+    }
+}
@@ -0,0 +1,35 @@
+package com.wayne.larkbot;
+
+/**
+ * 飞书开放平台返回了非0错误码
+ */
+public class LarkApiException extends Exception {
+    private final int code;
+    private final String msg;
+    private final String requestId;
+
+    /**
+     * @param action 失败的操作，如 "upload image"
+     * @param code 飞书错误码
+     * @param msg 错误信息
+     * @param requestId 请求ID
+     */
+    public LarkApiException(String action, int code, String msg, String requestId) {
+        super(String.format("Failed to %s: code:%s, msg:%s, reqId:%s", action, code, msg, requestId));
+        this.code = code;
+        this.msg = msg;
+        this.requestId = requestId;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getMsg() {
+        return msg;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+}
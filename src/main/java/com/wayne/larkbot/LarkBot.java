@@ -1,6 +1,7 @@
 package com.wayne.larkbot;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.lark.oapi.Client;
 import com.lark.oapi.core.utils.Jsons;
@@ -8,22 +9,253 @@ import com.lark.oapi.service.im.v1.model.*;
 import com.lark.oapi.service.contact.v3.model.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.HashMap;
 import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import com.lark.oapi.core.httpclient.IHttpTransport;
+import com.lark.oapi.core.httpclient.OkHttpTransport;
 import com.lark.oapi.core.request.RequestOptions;
+import com.lark.oapi.core.response.BaseResponse;
+import com.lark.oapi.okhttp.ConnectionPool;
+import com.lark.oapi.okhttp.OkHttpClient;
+import com.lark.oapi.okhttp.Protocol;
+import com.lark.oapi.okhttp.Request;
+import com.lark.oapi.okhttp.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 public class LarkBot {
+    private static final Logger log = LoggerFactory.getLogger(LarkBot.class);
+
     private final Client client;
     private final Gson gson = new Gson(); // 初始化Gson对象
+    private final ExecutorService executor; // 异步发送使用的执行器
+    private final boolean ownsExecutor;
+    private volatile RateLimiter rateLimiter = new RateLimiter(); // 客户端限流，null表示不限流
+    private volatile RetryPolicy retryPolicy = RetryPolicy.defaults(); // 发送失败时的重试策略
+    private final ChatDirectory chatDirectory; // 群名到chat_id的缓存目录
+    private final MemberCache memberCache; // 按群缓存的成员索引
+    private final UserIdResolver userIdResolver; // 合并批量查询的用户ID解析器
+    private volatile UploadCache uploadCache; // 上传去重缓存，null表示不缓存
+    private volatile ImagePreprocessor imagePreprocessor; // 上传前的图片预处理，null表示原样上传
+    private volatile LarkMetrics metrics = LarkMetrics.NOOP; // 接口调用指标
+    private volatile DuplicateSuppressor duplicateSuppressor; // 重复消息过滤，null表示不过滤
+    private final ConcurrentMap<Long, CompletableFuture<SendResult>> inFlightSends = new ConcurrentHashMap<>(); // 按指纹记录正在发送的消息
+    private volatile TenantTokenManager tokenManager; // 凭证管理，null表示由SDK自行获取凭证
+    private volatile BiFunction<String, String, LarkBot> throttleListener; // 触发应用级限流时选择改由哪个机器人发送，由LarkBotPool设置
+    private final OkHttpClient httpClient; // Builder创建的OkHttp客户端，用于流式下载；null表示只能经SDK下载
+    private final String baseUrl; // httpClient请求的开放平台地址
 
     public LarkBot(String appId, String appSecret) {
-        this.client = Client.newBuilder(appId, appSecret).build();
+        this(appId, appSecret, LarkExecutors.newDefaultExecutor(), true);
+    }
+
+    /**
+     * 使用指定执行器创建机器人，执行器的生命周期由调用方管理
+     * @param appId 应用ID
+     * @param appSecret 应用密钥
+     * @param executor 异步发送使用的执行器
+     */
+    public LarkBot(String appId, String appSecret, ExecutorService executor) {
+        this(appId, appSecret, executor, false);
+    }
+
+    /**
+     * 使用已配置好的SDK客户端创建机器人，例如指定了私有化部署域名或自定义HTTP传输的客户端
+     * @param client 飞书SDK客户端
+     * @param executor 异步发送使用的执行器，生命周期由调用方管理
+     */
+    public LarkBot(Client client, ExecutorService executor) {
+        this(client, executor, false);
+    }
+
+    private LarkBot(String appId, String appSecret, ExecutorService executor, boolean ownsExecutor) {
+        this(Client.newBuilder(appId, appSecret).build(), executor, ownsExecutor);
+    }
+
+    private LarkBot(Builder builder) {
+        // newClient创建builder.okHttpClient，须先于其求值
+        this(builder.newClient(),
+            builder.executor != null ? builder.executor : LarkExecutors.newDefaultExecutor(),
+            builder.executor == null,
+            builder.okHttpClient,
+            builder.baseUrl);
+    }
+
+    private LarkBot(Client client, ExecutorService executor, boolean ownsExecutor) {
+        this(client, executor, ownsExecutor, null, null);
+    }
+
+    private LarkBot(Client client, ExecutorService executor, boolean ownsExecutor, OkHttpClient httpClient, String baseUrl) {
+        this.client = client;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.httpClient = httpClient;
+        this.baseUrl = baseUrl;
+        this.chatDirectory = new ChatDirectory(client, 5, TimeUnit.MINUTES);
+        this.memberCache = new MemberCache(client, 100000, 10, TimeUnit.MINUTES);
+        this.userIdResolver = new UserIdResolver(client, executor, 10, 1, TimeUnit.HOURS);
+        // 组件的接口调用同样记录指标并在凭证失效时刷新
+        ApiCaller caller = new MeteredCaller();
+        chatDirectory.setApiCaller(caller);
+        memberCache.setApiCaller(caller);
+        userIdResolver.setApiCaller(caller);
+    }
+
+    /**
+     * 通过构建器创建机器人，可配置连接池、HTTP/2、超时与启动时的连接预热
+     * @param appId 应用ID
+     * @param appSecret 应用密钥
+     * @return 构建器
+     */
+    public static Builder newBuilder(String appId, String appSecret) {
+        return new Builder(appId, appSecret);
+    }
+
+    /**
+     * @return 群组目录，可用于手动刷新或失效
+     */
+    public ChatDirectory getChatDirectory() {
+        return chatDirectory;
+    }
+
+    /**
+     * @return 群成员缓存，可用于在成员变更时失效
+     */
+    public MemberCache getMemberCache() {
+        return memberCache;
+    }
+
+    /**
+     * @return 用户ID解析器，并发的单个查询会被合并为批量请求
+     */
+    public UserIdResolver getUserIdResolver() {
+        return userIdResolver;
+    }
+
+    /**
+     * 设置发送消息的限流器
+     * @param rateLimiter 限流器，传入null关闭客户端限流
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * 设置发送消息的重试策略
+     * @param retryPolicy 重试策略，传入RetryPolicy.none()关闭重试
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy != null ? retryPolicy : RetryPolicy.none();
+    }
+
+    /**
+     * 设置上传去重缓存，内容相同的文件只上传一次
+     * @param uploadCache 上传缓存，传入null关闭缓存
+     */
+    public void setUploadCache(UploadCache uploadCache) {
+        this.uploadCache = uploadCache;
+    }
+
+    /**
+     * 设置上传图片前的预处理，缩小尺寸并重新编码以减少上传字节数
+     * @param imagePreprocessor 图片预处理器，传入null时原样上传
+     */
+    public void setImagePreprocessor(ImagePreprocessor imagePreprocessor) {
+        this.imagePreprocessor = imagePreprocessor;
+    }
+
+    /**
+     * 设置接口调用指标的记录方式，例如 new MicrometerLarkMetrics(registry)；已设置的凭证管理器获取凭证的请求也记录到这里
+     * @param metrics 指标回调，传入null关闭记录
+     */
+    public void setMetrics(LarkMetrics metrics) {
+        this.metrics = metrics != null ? metrics : LarkMetrics.NOOP;
+        TenantTokenManager manager = tokenManager;
+        if (manager != null) {
+            manager.setMetrics(this.metrics);
+        }
+    }
+
+    /**
+     * 设置重复消息过滤，窗口内 (接收者, 消息类型, 内容) 相同的消息只发送一次。
+     * 相同消息正在发送时，后来者等待其结果：成功则视为重复，失败则自行发送，不会因第一次发送失败而丢失消息。
+     * 被过滤的消息在返回JSON字符串的方法中返回 {"suppressed":true}。
+     * 只作用于未指定uuid的发送，调用方自带uuid的重发不会被拦截
+     * @param duplicateSuppressor 重复消息过滤器，传入null关闭过滤
+     */
+    public void setDuplicateSuppressor(DuplicateSuppressor duplicateSuppressor) {
+        this.duplicateSuppressor = duplicateSuppressor;
+    }
+
+    /**
+     * 设置租户访问凭证的管理器，凭证在后台提前刷新，发送消息时不再等待获取凭证。
+     * 群组目录、成员缓存与用户ID解析器同时使用该凭证
+     * @param tokenManager 凭证管理器，例如 TenantTokenManager.newBuilder(appId, appSecret).build()；传入null时由SDK自行获取
+     */
+    public void setTenantTokenManager(TenantTokenManager tokenManager) {
+        this.tokenManager = tokenManager;
+        if (tokenManager != null && metrics != LarkMetrics.NOOP) {
+            tokenManager.setMetrics(metrics);
+        }
+        chatDirectory.setTenantTokenManager(tokenManager);
+        memberCache.setTenantTokenManager(tokenManager);
+        userIdResolver.setTenantTokenManager(tokenManager);
+    }
+
+    /**
+     * @param throttleListener 发送消息触发应用级限流时的回调，参数为接收者ID类型与ID，
+     *                         返回其他机器人时由它重发本条消息，返回本机器人时按重试策略等待重试
+     */
+    void setThrottleListener(BiFunction<String, String, LarkBot> throttleListener) {
+        this.throttleListener = throttleListener;
+    }
+
+    /**
+     * @return 是否已设置限流回调，即是否已属于某个LarkBotPool
+     */
+    boolean hasThrottleListener() {
+        return throttleListener != null;
+    }
+
+    /**
+     * @return 当前线程是否正在执行本机器人的异步任务
+     */
+    boolean isRunningOnExecutor() {
+        return LarkExecutors.isRunningOn(executor);
+    }
+
+    /**
+     * 关闭机器人内部创建的执行器，外部传入的执行器不受影响
+     */
+    public void shutdown() {
+        chatDirectory.close();
+        userIdResolver.close();
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
     }
 
     /**
@@ -33,6 +265,24 @@ public class LarkBot {
      * @return 用户信息或null
      */
     public List<Map<String, Object>> getUserInfo(List<String> emails, List<String> mobiles) throws Exception {
+        List<UserContactInfo> users = getUserContactInfos(emails, mobiles);
+        if (users == null) {
+            return null;
+        }
+        List<Map<String, Object>> userList = new ArrayList<>(users.size());
+        for (UserContactInfo user : users) {
+            userList.add(toMap(user));
+        }
+        return userList;
+    }
+
+    /**
+     * 获取用户信息，直接返回SDK的类型化结果
+     * @param emails 邮箱列表
+     * @param mobiles 手机号列表
+     * @return 用户信息或null
+     */
+    public List<UserContactInfo> getUserContactInfos(List<String> emails, List<String> mobiles) throws Exception {
         // 创建请求对象
         BatchGetIdUserReq req = BatchGetIdUserReq.newBuilder()
             .batchGetIdUserReqBody(BatchGetIdUserReqBody.newBuilder()
@@ -43,18 +293,36 @@ public class LarkBot {
             .build();
 
         // 发起请求
-        BatchGetIdUserResp resp = client.contact().user().batchGetId(req);
+        BatchGetIdUserResp resp = call(LarkMetrics.GET_USER_ID, () -> client.contact().user().batchGetId(req, TenantTokenManager.requestOptions(tokenManager)));
 
         // 处理服务端错误
         if (!resp.success()) {
-            System.err.println(String.format("Failed to get user info: code:%s, msg:%s, reqId:%s",
-                resp.getCode(), resp.getMsg(), resp.getRequestId()));
+            log.warn("Failed to get user info: code:{}, msg:{}, reqId:{}",
+                resp.getCode(), resp.getMsg(), resp.getRequestId());
             return null;
         }
 
         // 返回业务数据
-        Map<String, Object> responseData = Jsons.DEFAULT.fromJson(Jsons.DEFAULT.toJson(resp.getData()), Map.class);
-        return (List<Map<String, Object>>) responseData.get("user_list");
+        UserContactInfo[] users = resp.getData().getUserList();
+        return users != null ? Arrays.asList(users) : new ArrayList<>();
+    }
+
+    /**
+     * 根据邮箱异步获取用户ID，短时间内的并发查询会合并为一次批量请求
+     * @param email 邮箱
+     * @return 用户ID的Future，用户不存在时结果为null
+     */
+    public CompletableFuture<String> getUserIdByEmailAsync(String email) {
+        return userIdResolver.resolveByEmail(email);
+    }
+
+    /**
+     * 根据手机号异步获取用户ID，短时间内的并发查询会合并为一次批量请求
+     * @param mobile 手机号
+     * @return 用户ID的Future，用户不存在时结果为null
+     */
+    public CompletableFuture<String> getUserIdByMobileAsync(String mobile) {
+        return userIdResolver.resolveByMobile(mobile);
     }
 
     /**
@@ -62,34 +330,44 @@ public class LarkBot {
      * @return 聊天群组信息列表
      */
     public List<Map<String, Object>> getGroupList() throws Exception {
+        List<Map<String, Object>> groups = new ArrayList<>();
+        for (ListChat chat : listChats()) {
+            groups.add(toMap(chat));
+        }
+        return groups;
+    }
+
+    /**
+     * 获取聊天群组列表的第一页，直接返回SDK的类型化结果；需要全部群组时使用 getChatDirectory().getChats()
+     * @return 聊天群组列表
+     */
+    public List<ListChat> listChats() throws Exception {
         // 创建请求对象
         ListChatReq req = ListChatReq.newBuilder().build();
 
         // 发起请求
-        ListChatResp resp = client.im().chat().list(req);
+        ListChatResp resp = call(LarkMetrics.LIST_CHATS, () -> client.im().chat().list(req, TenantTokenManager.requestOptions(tokenManager)));
 
         // 处理服务端错误
         if (!resp.success()) {
-			System.out.println(String.format("code:%s,msg:%s,reqId:%s, resp:%s",
-				resp.getCode(), resp.getMsg(), resp.getRequestId(), Jsons.createGSON(true, false).toJson(JsonParser.parseString(new String(resp.getRawResponse().getBody(), StandardCharsets.UTF_8)))));
+			log.warn("Failed to list chats: code:{}, msg:{}, reqId:{}, resp:{}",
+				resp.getCode(), resp.getMsg(), resp.getRequestId(), new String(resp.getRawResponse().getBody(), StandardCharsets.UTF_8));
 			return List.of();
         }
 
         // 返回业务数据
-        return Jsons.DEFAULT.fromJson(Jsons.DEFAULT.toJson(resp.getData().getItems()), List.class);
+        ListChat[] items = resp.getData().getItems();
+        return items != null ? Arrays.asList(items) : List.of();
     }
 
     /**
-     * 根据群组名称获取聊天群组ID列表
+     * 根据群组名称获取聊天群组ID列表，从缓存的群组目录中查找
      * @param groupName 群组名称
      * @return 匹配群组名称的聊天群组ID列表
-     * @throws Exception 如果获取群组列表失败
+     * @throws Exception 如果首次加载群组目录失败
      */
     public List<String> getGroupChatIdByName(String groupName) throws Exception {
-        return getGroupList().stream()
-                .filter(group -> groupName.equals(group.get("name")))
-                .map(group -> (String) group.get("chat_id"))
-                .collect(Collectors.toList());
+        return chatDirectory.getChatIdsByName(groupName);
     }
 
     /**
@@ -99,39 +377,45 @@ public class LarkBot {
      * @throws Exception 如果获取成员列表失败
      */
     public List<Map<String, Object>> getMembersInGroupByGroupChatId(String groupChatId) throws Exception {
+        List<Map<String, Object>> members = new ArrayList<>();
+        for (ListMember member : listMembers(groupChatId)) {
+            members.add(toMap(member));
+        }
+        return members;
+    }
+
+    /**
+     * 获取特定群组聊天的成员列表第一页，直接返回SDK的类型化结果
+     * @param groupChatId 群组聊天ID
+     * @return 群组成员列表
+     * @throws Exception 如果获取成员列表失败
+     */
+    public List<ListMember> listMembers(String groupChatId) throws Exception {
         GetChatMembersReq req = GetChatMembersReq.newBuilder()
                 .chatId(groupChatId)
                 .build();
     
-        GetChatMembersResp resp = client.im().chatMembers().get(req);
+        GetChatMembersResp resp = call(LarkMetrics.GET_CHAT_MEMBERS, () -> client.im().chatMembers().get(req, TenantTokenManager.requestOptions(tokenManager)));
     
         if (!resp.success()) {
-            System.err.println(String.format("Failed to get chat members: code:%s, msg:%s, reqId:%s",
-                    resp.getCode(), resp.getMsg(), resp.getRequestId()));
+            log.warn("Failed to get chat members: code:{}, msg:{}, reqId:{}",
+                    resp.getCode(), resp.getMsg(), resp.getRequestId());
             return List.of();
         }
     
-        // 解析响应数据
-        String jsonData = Jsons.DEFAULT.toJson(resp.getData());
-        Map<String, Object> responseData = Jsons.DEFAULT.fromJson(jsonData, Map.class);
-    
-        // 返回 'items' 列表
-        return (List<Map<String, Object>>) responseData.get("items");
+        ListMember[] items = resp.getData().getItems();
+        return items != null ? Arrays.asList(items) : List.of();
     }
 
     /**
-     * 根据群组聊天ID和成员名称获取成员的open_id列表
+     * 根据群组聊天ID和成员名称获取成员的open_id列表，从按群缓存的成员索引中查找
      * @param groupChatId 群组聊天ID
      * @param memberName 成员名称
      * @return 匹配成员名称的open_id列表
      * @throws Exception 如果获取成员列表失败
      */
     public List<String> getMemberOpenIdByName(String groupChatId, String memberName) throws Exception {
-        List<Map<String, Object>> members = getMembersInGroupByGroupChatId(groupChatId);
-        return members.stream()
-                .filter(member -> memberName.equals(member.get("name")))
-                .map(member -> (String) member.get("member_id"))
-                .collect(Collectors.toList());
+        return memberCache.getMemberIdsByName(groupChatId, memberName);
     }
 
 
@@ -141,9 +425,124 @@ public class LarkBot {
      * @param receiveId 接收者的ID
      * @param msgType 消息类型
      * @param content 消息内容
-     * @return 消息发送结果
+     * @return 消息发送结果，失败时为 {}，被重复消息过滤拦截时为 {"suppressed":true}
      */
     private String sendMessage(String receiveIdType, String receiveId, String msgType, String content) throws Exception {
+        SendResult result = doSendMessage(receiveIdType, receiveId, msgType, content, null);
+        if (result.getError() instanceof Exception) {
+            throw (Exception) result.getError();
+        }
+        if (result.isSuppressed()) {
+            return "{\"suppressed\":true}";
+        }
+        if (!result.isSuccess()) {
+            return "{}";
+        }
+
+        // 返回成功结果
+        return Jsons.DEFAULT.toJson(result.getData());
+    }
+
+    /**
+     * 发送消息并返回结构化结果。调用方自行重试时传入同一个uuid，服务端会在1小时内对相同uuid去重
+     * @param receiveIdType 接收者ID类型 ('open_id' 或 'chat_id')
+     * @param receiveId 接收者的ID
+     * @param msgType 消息类型
+     * @param content 消息内容
+     * @param uuid 请求去重标识，为null时自动生成
+     * @return 消息发送结果，请求异常记录在结果中而不会抛出
+     */
+    public SendResult sendMessageWithResult(String receiveIdType, String receiveId, String msgType, String content,
+                                            String uuid) throws InterruptedException {
+        return doSendMessage(receiveIdType, receiveId, msgType, content, uuid);
+    }
+
+    /**
+     * 发送消息，按重试策略重试暂时性失败，所有尝试使用同一个uuid以避免重复投递
+     * @param receiveIdType 接收者ID类型 ('open_id' 或 'chat_id')
+     * @param receiveId 接收者的ID
+     * @param msgType 消息类型
+     * @param content 消息内容
+     * @param uuid 请求去重标识，为null时自动生成
+     * @return 最后一次尝试的结果，相同消息已发送成功时返回 SendResult.isSuppressed() 为true的结果
+     */
+    private SendResult doSendMessage(String receiveIdType, String receiveId, String msgType, String content,
+                                     String uuid) throws InterruptedException {
+        DuplicateSuppressor suppressor = uuid == null ? duplicateSuppressor : null;
+        if (suppressor == null) {
+            return sendWithRetry(receiveIdType, receiveId, msgType, content, uuid);
+        }
+        long fingerprint = DuplicateSuppressor.fingerprint(receiveId, msgType, content);
+        while (true) {
+            CompletableFuture<SendResult> sending = new CompletableFuture<>();
+            CompletableFuture<SendResult> first = inFlightSends.putIfAbsent(fingerprint, sending);
+            if (first != null) {
+                // 相同消息正在发送：成功则本条是重复，失败时指纹已被删除，重新竞争发送
+                SendResult firstResult;
+                try {
+                    firstResult = first.get();
+                } catch (ExecutionException e) {
+                    firstResult = null;
+                }
+                if (firstResult != null && firstResult.isSuccess()) {
+                    suppressor.recordHit();
+                    log.debug("Suppressed duplicate {} message to {}", msgType, receiveId);
+                    return SendResult.suppressed(receiveId);
+                }
+                continue;
+            }
+            SendResult result = null;
+            try {
+                if (!suppressor.tryAcquire(fingerprint)) {
+                    // 窗口内已发送成功过
+                    log.debug("Suppressed duplicate {} message to {}", msgType, receiveId);
+                    result = SendResult.suppressed(receiveId);
+                    return result;
+                }
+                result = sendWithRetry(receiveIdType, receiveId, msgType, content, null);
+                return result;
+            } finally {
+                // 发送失败时删除记录，使同一条消息可以再次发送；须先于唤醒等待者
+                if (result == null || !result.isSuccess()) {
+                    suppressor.release(fingerprint);
+                }
+                inFlightSends.remove(fingerprint, sending);
+                sending.complete(result);
+            }
+        }
+    }
+
+    private SendResult sendWithRetry(String receiveIdType, String receiveId, String msgType, String content,
+                                     String uuid) throws InterruptedException {
+        String requestUuid = uuid != null ? uuid : UUID.randomUUID().toString();
+        RetryPolicy policy = retryPolicy;
+        policy.onRequest();
+        for (int attempt = 1; ; attempt++) {
+            SendResult result;
+            try {
+                result = sendMessageOnce(receiveIdType, receiveId, msgType, content, requestUuid);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                result = SendResult.failed(receiveId, e);
+            }
+            if (result.getCode() == LarkErrorCodes.APP_RATE_LIMITED) {
+                BiFunction<String, String, LarkBot> listener = throttleListener;
+                LarkBot other = listener != null ? listener.apply(receiveIdType, receiveId) : null;
+                if (other != null && other != this) {
+                    // 本应用已限流，不在这里等待，改由池中的其他应用重发
+                    return other.sendWithRetry(receiveIdType, receiveId, msgType, content, requestUuid);
+                }
+            }
+            if (result.isSuccess() || !policy.shouldRetry(result, attempt)) {
+                return result;
+            }
+            Thread.sleep(policy.backoffMillis(attempt));
+        }
+    }
+
+    private SendResult sendMessageOnce(String receiveIdType, String receiveId, String msgType, String content,
+                                       String uuid) throws Exception {
         // 创建请求对象
         CreateMessageReq req = CreateMessageReq.newBuilder()
             .receiveIdType(receiveIdType)
@@ -151,22 +550,27 @@ public class LarkBot {
                 .receiveId(receiveId)
                 .msgType(msgType)
                 .content(content)
-                .uuid(UUID.randomUUID().toString())
+                .uuid(uuid)
                 .build())
             .build();
 
-        // 发起请求
-        CreateMessageResp resp = client.im().message().create(req);
+        // 等待限流器放行后发起请求
+        RateLimiter limiter = rateLimiter;
+        if (limiter != null) {
+            limiter.acquire(receiveIdType, receiveId);
+        }
+        CreateMessageResp resp = call(LarkMetrics.SEND_MESSAGE, () -> client.im().message().create(req, TenantTokenManager.requestOptions(tokenManager)));
 
         // 处理服务端错误
         if (!resp.success()) {
-            System.err.println(String.format("Failed to send message: code:%s, msg:%s, reqId:%s",
-                resp.getCode(), resp.getMsg(), resp.getRequestId()));
-            return "{}";
+            log.warn("Failed to send message: code:{}, msg:{}, reqId:{}",
+                resp.getCode(), resp.getMsg(), resp.getRequestId());
+            if (limiter != null && LarkErrorCodes.isRateLimited(resp.getCode())) {
+                limiter.onThrottled(receiveIdType, receiveId, resp.getCode());
+            }
         }
-
-        // 返回成功结果
-        return Jsons.DEFAULT.toJson(resp.getData());
+        return new SendResult(receiveId, resp.success() ? resp.getData() : null,
+            resp.getCode(), resp.getMsg(), resp.getRequestId(), null);
     }
 
     /**
@@ -193,6 +597,26 @@ public class LarkBot {
         return sendMessage("chat_id", chatId, "text", content);
     }
 
+    /**
+     * 发送由构造器生成的文本消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param text 文本消息构造器
+     * @return 消息发送结果
+     */
+    public String sendTextToUser(String userOpenId, TextContent.Builder text) throws Exception {
+        return sendMessage("open_id", userOpenId, "text", text.toJson());
+    }
+
+    /**
+     * 发送由构造器生成的文本消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param text 文本消息构造器
+     * @return 消息发送结果
+     */
+    public String sendTextToChat(String chatId, TextContent.Builder text) throws Exception {
+        return sendMessage("chat_id", chatId, "text", text.toJson());
+    }
+
     /**
      * 发送图片消息给特定用户
      * @param userOpenId 用户的open_id
@@ -375,8 +799,17 @@ public class LarkBot {
      * @return 消息发送结果
      */
     public String sendPostToUser(String userOpenId, Object postContent) throws Exception {
-        String content = Jsons.DEFAULT.toJson(postContent);
-        return sendMessage("open_id", userOpenId, "post", content);
+        return sendMessage("open_id", userOpenId, "post", postJson(postContent));
+    }
+
+    /**
+     * 发送帖子消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param post 帖子消息构造器
+     * @return 消息发送结果
+     */
+    public String sendPostToUser(String userOpenId, PostBuilder post) throws Exception {
+        return sendMessage("open_id", userOpenId, "post", post.toJson());
     }
 
     /**
@@ -386,8 +819,295 @@ public class LarkBot {
      * @return 消息发送结果
      */
     public String sendPostToChat(String chatId, Map<String, Object> postContent) throws Exception {
-        String content = Jsons.DEFAULT.toJson(postContent);
-        return sendMessage("chat_id", chatId, "post", content);
+        return sendMessage("chat_id", chatId, "post", postJson(postContent));
+    }
+
+    /**
+     * 发送帖子消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param post 帖子消息构造器
+     * @return 消息发送结果
+     */
+    public String sendPostToChat(String chatId, PostBuilder post) throws Exception {
+        return sendMessage("chat_id", chatId, "post", post.toJson());
+    }
+
+    /**
+     * 发送帖子消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param post 帖子消息
+     * @return 消息发送结果
+     */
+    public String sendPostToChat(String chatId, PostContent post) throws Exception {
+        return sendMessage("chat_id", chatId, "post", post.toJson());
+    }
+
+    /**
+     * 更新已发送的卡片消息，所有人看到的卡片同时更新。卡片的 config 中需声明 "update_multi": true
+     * @param messageId 卡片消息的message_id
+     * @param interactive 新的卡片内容
+     * @throws LarkApiException 飞书返回错误码
+     */
+    public void updateInteractive(String messageId, Map<String, Object> interactive) throws Exception {
+        updateInteractive(messageId, Jsons.DEFAULT.toJson(interactive));
+    }
+
+    /**
+     * 更新已发送的卡片消息
+     * @param messageId 卡片消息的message_id
+     * @param content 已序列化的卡片内容
+     * @throws LarkApiException 飞书返回错误码
+     */
+    public void updateInteractive(String messageId, String content) throws Exception {
+        PatchMessageReq req = PatchMessageReq.newBuilder()
+            .messageId(messageId)
+            .patchMessageReqBody(PatchMessageReqBody.newBuilder()
+                .content(content)
+                .build())
+            .build();
+        PatchMessageResp resp = call(LarkMetrics.PATCH_MESSAGE,
+            () -> client.im().message().patch(req, TenantTokenManager.requestOptions(tokenManager)));
+        if (!resp.success()) {
+            log.warn("Failed to update message {}: code:{}, msg:{}, reqId:{}",
+                messageId, resp.getCode(), resp.getMsg(), resp.getRequestId());
+            throw new LarkApiException("update message", resp.getCode(), resp.getMsg(), resp.getRequestId());
+        }
+    }
+
+    // 已知的内容类型直接流式写出，其他对象仍通过Gson序列化
+    private static String postJson(Object postContent) {
+        if (postContent instanceof PostBuilder) {
+            return ((PostBuilder) postContent).toJson();
+        }
+        if (postContent instanceof PostContent) {
+            return ((PostContent) postContent).toJson();
+        }
+        if (postContent instanceof Map) {
+            JsonBuffer buffer = new JsonBuffer(256);
+            try {
+                JsonBuffer.writeValue(buffer.reset(256), postContent);
+                return buffer.toString();
+            } catch (IllegalArgumentException e) {
+                // Map中含有自定义对象，交给Gson反射处理
+            }
+        }
+        return Jsons.DEFAULT.toJson(postContent);
+    }
+
+    /**
+     * 异步发送消息
+     * @param receiveIdType 接收者ID类型 ('open_id' 或 'chat_id')
+     * @param receiveId 接收者的ID
+     * @param msgType 消息类型
+     * @param content 消息内容
+     * @return 消息发送结果的Future，可通过cancel取消发送
+     */
+    public CompletableFuture<String> sendMessageAsync(String receiveIdType, String receiveId, String msgType, String content) {
+        return sendMessageAsync(receiveIdType, receiveId, msgType, content, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 异步发送消息，超时后Future以TimeoutException完成并中断请求
+     * @param receiveIdType 接收者ID类型 ('open_id' 或 'chat_id')
+     * @param receiveId 接收者的ID
+     * @param msgType 消息类型
+     * @param content 消息内容
+     * @param timeout 超时时间，小于等于0表示不限制
+     * @param unit 超时时间单位
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<String> sendMessageAsync(String receiveIdType, String receiveId, String msgType, String content,
+                                                      long timeout, TimeUnit unit) {
+        return submitAsync(() -> sendMessage(receiveIdType, receiveId, msgType, content), timeout, unit);
+    }
+
+    /**
+     * 异步发送消息并返回完整结果，请求异常记录在结果中
+     * @param receiveIdType 接收者ID类型 ('open_id' 或 'chat_id')
+     * @param receiveId 接收者的ID
+     * @param msgType 消息类型
+     * @param content 消息内容
+     * @param uuid 请求去重标识，为null时自动生成
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<SendResult> sendMessageWithResultAsync(String receiveIdType, String receiveId, String msgType,
+                                                                    String content, String uuid) {
+        return submitAsync(() -> doSendMessage(receiveIdType, receiveId, msgType, content, uuid), 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 异步发送文本消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param text 文本消息
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<String> sendTextToUserAsync(String userOpenId, String text) {
+        return sendTextToUserAsync(userOpenId, text, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 异步发送文本消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param text 文本消息
+     * @param timeout 超时时间，小于等于0表示不限制
+     * @param unit 超时时间单位
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<String> sendTextToUserAsync(String userOpenId, String text, long timeout, TimeUnit unit) {
+        return submitAsync(() -> sendTextToUser(userOpenId, text), timeout, unit);
+    }
+
+    /**
+     * 异步发送文本消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param text 文本消息
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<String> sendTextToChatAsync(String chatId, String text) {
+        return sendTextToChatAsync(chatId, text, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 异步发送文本消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param text 文本消息
+     * @param timeout 超时时间，小于等于0表示不限制
+     * @param unit 超时时间单位
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<String> sendTextToChatAsync(String chatId, String text, long timeout, TimeUnit unit) {
+        return submitAsync(() -> sendTextToChat(chatId, text), timeout, unit);
+    }
+
+    /**
+     * 异步发送图片消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param imageKey 图片的key
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<String> sendImageToUserAsync(String userOpenId, String imageKey) {
+        return submitAsync(() -> sendImageToUser(userOpenId, imageKey), 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 异步发送图片消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param imageKey 图片的key
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<String> sendImageToChatAsync(String chatId, String imageKey) {
+        return submitAsync(() -> sendImageToChat(chatId, imageKey), 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 异步发送交互消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param interactive 交互消息内容
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<String> sendInteractiveToUserAsync(String userOpenId, Map<String, Object> interactive) {
+        return submitAsync(() -> sendInteractiveToUser(userOpenId, interactive), 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 异步发送交互消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param interactive 交互消息内容
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<String> sendInteractiveToChatAsync(String chatId, Map<String, Object> interactive) {
+        return submitAsync(() -> sendInteractiveToChat(chatId, interactive), 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 异步发送帖子消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param postContent 帖子消息内容
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<String> sendPostToUserAsync(String userOpenId, Object postContent) {
+        return submitAsync(() -> sendPostToUser(userOpenId, postContent), 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 异步发送帖子消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param postContent 帖子消息内容
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<String> sendPostToChatAsync(String chatId, Map<String, Object> postContent) {
+        return submitAsync(() -> sendPostToChat(chatId, postContent), 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 将同一条消息广播给多个接收者，消息内容只序列化一次，阻塞直到全部完成。
+     * 在本机器人的异步任务中调用时改为在当前线程逐个发送，以免有界执行器的线程都在等待而死锁
+     * @param receiveIdType 接收者ID类型 ('open_id' 或 'chat_id')
+     * @param receiveIds 接收者ID列表
+     * @param msgType 消息类型
+     * @param content 已序列化的消息内容
+     * @param concurrency 同时进行中的请求数上限
+     * @return 每个接收者的发送结果
+     */
+    public BroadcastReport broadcast(String receiveIdType, List<String> receiveIds, String msgType, String content,
+                                     int concurrency) {
+        if (!LarkExecutors.isRunningOn(executor)) {
+            return broadcastAsync(receiveIdType, receiveIds, msgType, content, concurrency).join();
+        }
+        // 当前线程属于本机器人的执行器，提交后再join可能等不到空闲线程
+        long start = System.nanoTime();
+        List<SendResult> results = new ArrayList<>(receiveIds.size());
+        for (String receiveId : receiveIds) {
+            SendResult result;
+            try {
+                result = doSendMessage(receiveIdType, receiveId, msgType, content, null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result = SendResult.failed(receiveId, e);
+            } catch (Exception e) {
+                result = SendResult.failed(receiveId, e);
+            }
+            results.add(result);
+        }
+        return new BroadcastReport(results, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * 将同一条文本消息广播给多个接收者
+     * @param receiveIdType 接收者ID类型 ('open_id' 或 'chat_id')
+     * @param receiveIds 接收者ID列表
+     * @param text 文本消息
+     * @param concurrency 同时进行中的请求数上限
+     * @return 每个接收者的发送结果
+     */
+    public BroadcastReport broadcastText(String receiveIdType, List<String> receiveIds, String text, int concurrency) {
+        String content = gson.toJson(Map.of("text", text));
+        return broadcast(receiveIdType, receiveIds, "text", content, concurrency);
+    }
+
+    /**
+     * 异步广播，任意时刻最多有concurrency个请求在进行中。
+     * 不经过 OutboundScheduler 的优先级队列，需要与其他消息按优先级共享限流时使用 OutboundScheduler.broadcast
+     * @param receiveIdType 接收者ID类型 ('open_id' 或 'chat_id')
+     * @param receiveIds 接收者ID列表
+     * @param msgType 消息类型
+     * @param content 已序列化的消息内容
+     * @param concurrency 同时进行中的请求数上限
+     * @return 广播结果的Future
+     */
+    public CompletableFuture<BroadcastReport> broadcastAsync(String receiveIdType, List<String> receiveIds, String msgType,
+                                                             String content, int concurrency) {
+        long start = System.nanoTime();
+        SendResult[] results = new SendResult[receiveIds.size()];
+        return LarkExecutors.runBounded(executor, receiveIds.size(), concurrency,
+                index -> () -> doSendMessage(receiveIdType, receiveIds.get(index), msgType, content, null),
+                (index, result, error) -> results[index] = error == null ? result : SendResult.failed(receiveIds.get(index), error))
+            .thenApply(ignored -> new BroadcastReport(Arrays.asList(results),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+
+    private <T> CompletableFuture<T> submitAsync(Callable<T> task, long timeout, TimeUnit unit) {
+        return LarkExecutors.submit(executor, task, timeout, unit);
     }
 
     /**
@@ -397,30 +1117,72 @@ public class LarkBot {
      */
     public String uploadImage(String imagePath) {
         try {
-            File file = new File(imagePath);
-            CreateImageReq req = CreateImageReq.newBuilder()
-                .createImageReqBody(CreateImageReqBody.newBuilder()
-                    .imageType("message")
-                    .image(file)
-                    .build())
-                .build();
+            return doUploadImage(imagePath, null);
+        } catch (LarkApiException e) {
+            // 错误详情已在上传时输出
+            return "";
+        } catch (Exception e) {
+            log.error("Exception occurred while uploading image", e);
+            return "";
+        }
+    }
 
-            CreateImageResp resp = client.im().image().create(req);
+    /**
+     * 并行上传多张图片，阻塞直到全部完成。在本机器人的异步任务中调用时改为在当前线程逐个上传，
+     * 以免有界执行器的线程都在等待排不上队的上传而死锁
+     * @param imagePaths 本地图片文件路径
+     * @param parallelism 同时上传的文件数上限
+     * @return 每个文件的上传结果与整体吞吐
+     */
+    public UploadReport uploadImages(Collection<String> imagePaths, int parallelism) {
+        return uploadAll(imagePaths, parallelism, this::doUploadImage);
+    }
 
-            if (!resp.success()) {
-                System.err.println(String.format("Failed to upload image: code:%s, msg:%s, reqId:%s, resp:%s",
-                    resp.getCode(), resp.getMsg(), resp.getRequestId(), Jsons.createGSON(true, false).toJson(JsonParser.parseString(new String(resp.getRawResponse().getBody(), StandardCharsets.UTF_8)))));
-                return "";
+    /**
+     * @param uploadedBytes 累加实际上传的字节数，为null时不统计
+     */
+    private String doUploadImage(String imagePath, LongAdder uploadedBytes) throws Exception {
+        File file = new File(imagePath);
+        UploadCache cache = uploadCache;
+        ImagePreprocessor preprocessor = imagePreprocessor;
+        // 按原图摘要缓存，命中时连预处理也跳过；预处理参数不同的结果分开记录
+        String kind = preprocessor != null ? "image:" + preprocessor.getTag() : "image";
+        String digest = cache != null || preprocessor != null ? UploadCache.digest(file.toPath()) : null;
+        if (cache != null) {
+            String cachedKey = cache.get(kind, digest);
+            if (cachedKey != null) {
+                return cachedKey;
             }
+        }
+        if (preprocessor != null) {
+            file = preprocessor.process(file.toPath(), digest).toFile();
+        }
 
-            // 返回成功结果
-            Map<String, Object> responseData = Jsons.DEFAULT.fromJson(Jsons.DEFAULT.toJson(resp.getData()), Map.class);
-            return (String) responseData.get("image_key");
-        } catch (Exception e) {
-            System.err.println("Exception occurred while uploading image: " + e.getMessage());
-            e.printStackTrace();
-            return "";
+        CreateImageReq req = CreateImageReq.newBuilder()
+            .createImageReqBody(CreateImageReqBody.newBuilder()
+                .imageType("message")
+                .image(file)
+                .build())
+            .build();
+
+        CreateImageResp resp = call(LarkMetrics.UPLOAD_IMAGE, () -> client.im().image().create(req, TenantTokenManager.requestOptions(tokenManager)));
+
+        if (!resp.success()) {
+            log.warn("Failed to upload image: code:{}, msg:{}, reqId:{}, resp:{}",
+                resp.getCode(), resp.getMsg(), resp.getRequestId(), new String(resp.getRawResponse().getBody(), StandardCharsets.UTF_8));
+            throw new LarkApiException("upload image", resp.getCode(), resp.getMsg(), resp.getRequestId());
+        }
+
+        if (uploadedBytes != null) {
+            uploadedBytes.add(file.length());
         }
+
+        // 返回成功结果
+        String imageKey = resp.getData().getImageKey();
+        if (cache != null) {
+            cache.put(kind, digest, imageKey);
+        }
+        return imageKey;
     }
 
     /**
@@ -436,23 +1198,74 @@ public class LarkBot {
                 .build();
 
             // 发起请求
-            GetImageResp resp = client.im().image().get(req);
+            GetImageResp resp = call(LarkMetrics.DOWNLOAD_IMAGE, () -> client.im().image().get(req, TenantTokenManager.requestOptions(tokenManager)));
 
             // 处理服务端错误
             if (!resp.success()) {
-                System.err.println(String.format("Failed to download image: code:%s, msg:%s, reqId:%s",
-                    resp.getCode(), resp.getMsg(), resp.getRequestId()));
+                log.warn("Failed to download image: code:{}, msg:{}, reqId:{}",
+                    resp.getCode(), resp.getMsg(), resp.getRequestId());
                 return;
             }
 
             // 保存图片
             resp.writeFile(imageSavePath);
         } catch (Exception e) {
-            System.err.println("Exception occurred while downloading image: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Exception occurred while downloading image", e);
         }
     }
 
+    /**
+     * 下载图片并写入输出流，输出流不会被关闭
+     * @param imageKey 图片的key
+     * @param out 输出流
+     * @return 写入的字节数
+     * @throws Exception 下载或写入失败
+     */
+    public long downloadImage(String imageKey, OutputStream out) throws Exception {
+        return downloadImage(imageKey, body -> DownloadWriter.copy(body, out));
+    }
+
+    /**
+     * 下载图片并分块写入通道，通道不会被关闭
+     * @param imageKey 图片的key
+     * @param channel 目标通道
+     * @return 写入的字节数
+     * @throws Exception 下载或写入失败
+     */
+    public long downloadImage(String imageKey, WritableByteChannel channel) throws Exception {
+        return downloadImage(imageKey, body -> body.copyTo(channel, null));
+    }
+
+    /**
+     * 下载图片到文件：先写临时文件，校验后原子重命名，失败时不会留下不完整的文件
+     * @param imageKey 图片的key
+     * @param target 目标文件
+     * @param expectedSha256 期望的SHA-256十六进制摘要，为null时不校验
+     * @return 文件内容的SHA-256十六进制摘要
+     * @throws Exception 下载、写入失败或摘要不匹配
+     */
+    public String downloadImageToFile(String imageKey, Path target, String expectedSha256) throws Exception {
+        return downloadImage(imageKey, body -> DownloadWriter.writeAtomically(body, target, expectedSha256));
+    }
+
+    private <T> T downloadImage(String imageKey, DownloadWriter.BodyHandler<T> handler) throws Exception {
+        return download(LarkMetrics.DOWNLOAD_IMAGE, "download image", "/open-apis/im/v1/images/" + imageKey,
+            () -> fetchImage(imageKey), handler);
+    }
+
+    private ByteArrayOutputStream fetchImage(String imageKey) throws Exception {
+        GetImageReq req = GetImageReq.newBuilder()
+            .imageKey(imageKey)
+            .build();
+
+        GetImageResp resp = call(LarkMetrics.DOWNLOAD_IMAGE, () -> client.im().image().get(req, TenantTokenManager.requestOptions(tokenManager)));
+
+        if (!resp.success()) {
+            throw new LarkApiException("download image", resp.getCode(), resp.getMsg(), resp.getRequestId());
+        }
+        return resp.getData();
+    }
+
     /**
      * 上传文件到飞书
      * @param filePath 本地文件路径
@@ -461,29 +1274,108 @@ public class LarkBot {
      */
     public String uploadFile(String filePath, String fileType) {
         try {
-            File file = new File(filePath);
-            CreateFileReq req = CreateFileReq.newBuilder()
-                .createFileReqBody(CreateFileReqBody.newBuilder()
-                    .fileType(fileType)
-                    .fileName(file.getName())
-                    .file(file)
-                    .build())
-                .build();
+            return doUploadFile(filePath, fileType, null);
+        } catch (LarkApiException e) {
+            // 错误详情已在上传时输出
+            return "";
+        } catch (Exception e) {
+            log.error("Exception occurred while uploading file", e);
+            return "";
+        }
+    }
 
-            CreateFileResp resp = client.im().file().create(req);
+    /**
+     * 并行上传多个文件，阻塞直到全部完成；在本机器人的异步任务中调用时与 uploadImages 相同地改为逐个上传
+     * @param filePaths 本地文件路径
+     * @param fileType 文件类型
+     * @param parallelism 同时上传的文件数上限
+     * @return 每个文件的上传结果与整体吞吐
+     */
+    public UploadReport uploadFiles(Collection<String> filePaths, String fileType, int parallelism) {
+        return uploadAll(filePaths, parallelism, (path, uploadedBytes) -> doUploadFile(path, fileType, uploadedBytes));
+    }
 
-            if (!resp.success()) {
-                System.err.println(String.format("Failed to upload file: code:%s, msg:%s, reqId:%s",
-                    resp.getCode(), resp.getMsg(), resp.getRequestId()));
-                return "";
+    /**
+     * @param uploadedBytes 累加实际上传的字节数，为null时不统计
+     */
+    private String doUploadFile(String filePath, String fileType, LongAdder uploadedBytes) throws Exception {
+        File file = new File(filePath);
+        // 文件名会展示在消息中，因此与文件类型一起作为缓存的区分条件
+        String kind = "file:" + fileType + ":" + file.getName().replace('\t', ' ');
+        UploadCache cache = uploadCache;
+        String digest = cache != null ? UploadCache.digest(file.toPath()) : null;
+        if (digest != null) {
+            String cachedKey = cache.get(kind, digest);
+            if (cachedKey != null) {
+                return cachedKey;
             }
+        }
 
-            return resp.getData().getFileKey();
-        } catch (Exception e) {
-            System.err.println("Exception occurred while uploading file: " + e.getMessage());
-            e.printStackTrace();
-            return "";
+        CreateFileReq req = CreateFileReq.newBuilder()
+            .createFileReqBody(CreateFileReqBody.newBuilder()
+                .fileType(fileType)
+                .fileName(file.getName())
+                .file(file)
+                .build())
+            .build();
+
+        CreateFileResp resp = call(LarkMetrics.UPLOAD_FILE, () -> client.im().file().create(req, TenantTokenManager.requestOptions(tokenManager)));
+
+        if (!resp.success()) {
+            log.warn("Failed to upload file: code:{}, msg:{}, reqId:{}",
+                resp.getCode(), resp.getMsg(), resp.getRequestId());
+            throw new LarkApiException("upload file", resp.getCode(), resp.getMsg(), resp.getRequestId());
+        }
+
+        if (uploadedBytes != null) {
+            uploadedBytes.add(file.length());
         }
+        String fileKey = resp.getData().getFileKey();
+        if (digest != null) {
+            cache.put(kind, digest, fileKey);
+        }
+        return fileKey;
+    }
+
+    private UploadReport uploadAll(Collection<String> paths, int parallelism, Uploader uploader) {
+        long start = System.nanoTime();
+        List<String> pathList = new ArrayList<>(paths);
+        String[] keys = new String[pathList.size()];
+        Throwable[] errors = new Throwable[pathList.size()];
+        LongAdder uploadedBytes = new LongAdder();
+        if (LarkExecutors.isRunningOn(executor)) {
+            // 当前线程属于本机器人的执行器，提交后再join可能等不到空闲线程，直接在当前线程逐个上传
+            for (int i = 0; i < keys.length; i++) {
+                try {
+                    keys[i] = uploader.upload(pathList.get(i), uploadedBytes);
+                } catch (Exception e) {
+                    errors[i] = e;
+                }
+            }
+        } else {
+            LarkExecutors.runBounded(executor, pathList.size(), parallelism,
+                    index -> () -> uploader.upload(pathList.get(index), uploadedBytes),
+                    (index, key, error) -> {
+                        keys[index] = key;
+                        errors[index] = error;
+                    })
+                .join();
+        }
+
+        Map<String, String> keyMap = new LinkedHashMap<>();
+        Map<String, Throwable> failureMap = new LinkedHashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            if (errors[i] == null) {
+                keyMap.put(pathList.get(i), keys[i]);
+            } else {
+                failureMap.put(pathList.get(i), errors[i]);
+            }
+        }
+        return new UploadReport(keyMap, failureMap, uploadedBytes.sum(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private interface Uploader {
+        String upload(String path, LongAdder uploadedBytes) throws Exception;
     }
 
     /**
@@ -497,18 +1389,368 @@ public class LarkBot {
                 .fileKey(fileKey)
                 .build();
 
-            GetFileResp resp = client.im().file().get(req);
+            GetFileResp resp = call(LarkMetrics.DOWNLOAD_FILE, () -> client.im().file().get(req, TenantTokenManager.requestOptions(tokenManager)));
 
             if (!resp.success()) {
-                System.err.println(String.format("Failed to download file: code:%s, msg:%s, reqId:%s",
-                    resp.getCode(), resp.getMsg(), resp.getRequestId()));
+                log.warn("Failed to download file: code:{}, msg:{}, reqId:{}",
+                    resp.getCode(), resp.getMsg(), resp.getRequestId());
                 return;
             }
 
             resp.writeFile(fileSavePath);
         } catch (Exception e) {
-            System.err.println("Exception occurred while downloading file: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Exception occurred while downloading file", e);
+        }
+    }
+
+    /**
+     * 下载文件并写入输出流，输出流不会被关闭
+     * @param fileKey 文件的key
+     * @param out 输出流
+     * @return 写入的字节数
+     * @throws Exception 下载或写入失败
+     */
+    public long downloadFile(String fileKey, OutputStream out) throws Exception {
+        return downloadFile(fileKey, body -> DownloadWriter.copy(body, out));
+    }
+
+    /**
+     * 下载文件并分块写入通道，通道不会被关闭
+     * @param fileKey 文件的key
+     * @param channel 目标通道
+     * @return 写入的字节数
+     * @throws Exception 下载或写入失败
+     */
+    public long downloadFile(String fileKey, WritableByteChannel channel) throws Exception {
+        return downloadFile(fileKey, body -> body.copyTo(channel, null));
+    }
+
+    /**
+     * 下载文件到本地：先写临时文件，校验后原子重命名，失败时不会留下不完整的文件
+     * @param fileKey 文件的key
+     * @param target 目标文件
+     * @param expectedSha256 期望的SHA-256十六进制摘要，为null时不校验
+     * @return 文件内容的SHA-256十六进制摘要
+     * @throws Exception 下载、写入失败或摘要不匹配
+     */
+    public String downloadFileToFile(String fileKey, Path target, String expectedSha256) throws Exception {
+        return downloadFile(fileKey, body -> DownloadWriter.writeAtomically(body, target, expectedSha256));
+    }
+
+    private <T> T downloadFile(String fileKey, DownloadWriter.BodyHandler<T> handler) throws Exception {
+        return download(LarkMetrics.DOWNLOAD_FILE, "download file", "/open-apis/im/v1/files/" + fileKey,
+            () -> fetchFile(fileKey), handler);
+    }
+
+    private ByteArrayOutputStream fetchFile(String fileKey) throws Exception {
+        GetFileReq req = GetFileReq.newBuilder()
+            .fileKey(fileKey)
+            .build();
+
+        GetFileResp resp = call(LarkMetrics.DOWNLOAD_FILE, () -> client.im().file().get(req, TenantTokenManager.requestOptions(tokenManager)));
+
+        if (!resp.success()) {
+            throw new LarkApiException("download file", resp.getCode(), resp.getMsg(), resp.getRequestId());
+        }
+        return resp.getData();
+    }
+
+    /**
+     * 下载并处理响应体。通过Builder使用默认传输创建且设置了凭证管理器时，直接用OkHttp请求下载接口，
+     * 响应体经固定大小的缓冲区边读边写，堆内存占用与文件大小无关；否则经SDK下载，整个响应体先缓冲在内存中
+     * @param api 接口名
+     * @param action 出错时异常中的操作描述
+     * @param path 下载接口的路径
+     * @param buffered 经SDK下载的回退方式
+     * @param handler 响应体的处理
+     * @return 处理结果
+     * @throws Exception 下载或处理失败，飞书返回错误码时为 LarkApiException
+     */
+    private <T> T download(String api, String action, String path, Callable<ByteArrayOutputStream> buffered,
+                           DownloadWriter.BodyHandler<T> handler) throws Exception {
+        TenantTokenManager manager = tokenManager;
+        if (httpClient == null || manager == null) {
+            return handler.handle(DownloadWriter.of(buffered.call()));
+        }
+        Request request = new Request.Builder()
+            .url(baseUrl + path)
+            .header("Authorization", "Bearer " + manager.getToken())
+            .get()
+            .build();
+        LarkMetrics recorder = metrics;
+        long start = System.nanoTime();
+        try (Response resp = httpClient.newCall(request).execute()) {
+            String requestId = resp.header("X-Tt-Logid");
+            if (!resp.isSuccessful()) {
+                LarkApiException error = toApiException(action, resp, requestId);
+                recorder.recordCall(api, System.nanoTime() - start, error.getCode(), requestId, null);
+                if (LarkErrorCodes.isTokenInvalid(error.getCode())) {
+                    manager.invalidate();
+                }
+                throw error;
+            }
+            T result = handler.handle(DownloadWriter.of(resp.body().byteStream()));
+            recorder.recordCall(api, System.nanoTime() - start, 0, requestId, null);
+            return result;
+        } catch (IOException e) {
+            recorder.recordCall(api, System.nanoTime() - start, -1, null, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 从下载接口的错误响应中取出飞书错误码，响应体不是JSON时使用HTTP状态码
+     */
+    private static LarkApiException toApiException(String action, Response resp, String requestId) {
+        int code = resp.code();
+        String msg = resp.message();
+        try {
+            JsonObject json = JsonParser.parseString(resp.body().string()).getAsJsonObject();
+            if (json.has("code")) {
+                code = json.get("code").getAsInt();
+            }
+            if (json.has("msg")) {
+                msg = json.get("msg").getAsString();
+            }
+        } catch (Exception e) {
+            log.debug("Non-JSON error response from {}", action, e);
+        }
+        return new LarkApiException(action, code, msg, requestId);
+    }
+
+    /**
+     * 调用SDK接口并记录耗时、错误码与请求ID
+     * @param api 接口名
+     * @param call SDK调用
+     * @return SDK响应
+     * @throws Exception SDK调用抛出的异常
+     */
+    private <T extends BaseResponse<?>> T call(String api, Callable<T> call) throws Exception {
+        LarkMetrics recorder = metrics;
+        long start = System.nanoTime();
+        T resp;
+        try {
+            resp = call.call();
+        } catch (Exception e) {
+            recorder.recordCall(api, System.nanoTime() - start, -1, null, e);
+            throw e;
+        }
+        recorder.recordCall(api, System.nanoTime() - start, resp.getCode(), resp.getRequestId(), null);
+        TenantTokenManager manager = tokenManager;
+        if (manager != null && LarkErrorCodes.isTokenInvalid(resp.getCode())) {
+            manager.invalidate();
+        }
+        return resp;
+    }
+
+    private final class MeteredCaller implements ApiCaller {
+        @Override
+        public <T extends BaseResponse<?>> T call(String api, Callable<T> call) throws Exception {
+            return LarkBot.this.call(api, call);
+        }
+    }
+
+    // 以下方法按SDK模型的JSON字段名直接提取字段，与序列化后再解析得到的Map一致（省略null字段）
+    private static Map<String, Object> toMap(UserContactInfo user) {
+        Map<String, Object> map = new HashMap<>();
+        putIfNotNull(map, "user_id", user.getUserId());
+        putIfNotNull(map, "mobile", user.getMobile());
+        putIfNotNull(map, "email", user.getEmail());
+        UserStatus status = user.getStatus();
+        if (status != null) {
+            Map<String, Object> statusMap = new HashMap<>();
+            putIfNotNull(statusMap, "is_frozen", status.getIsFrozen());
+            putIfNotNull(statusMap, "is_resigned", status.getIsResigned());
+            putIfNotNull(statusMap, "is_activated", status.getIsActivated());
+            map.put("status", statusMap);
+        }
+        return map;
+    }
+
+    private static Map<String, Object> toMap(ListChat chat) {
+        Map<String, Object> map = new HashMap<>();
+        putIfNotNull(map, "chat_id", chat.getChatId());
+        putIfNotNull(map, "avatar", chat.getAvatar());
+        putIfNotNull(map, "name", chat.getName());
+        putIfNotNull(map, "description", chat.getDescription());
+        putIfNotNull(map, "owner_id", chat.getOwnerId());
+        putIfNotNull(map, "owner_id_type", chat.getOwnerIdType());
+        putIfNotNull(map, "external", chat.getExternal());
+        putIfNotNull(map, "tenant_key", chat.getTenantKey());
+        putIfNotNull(map, "chat_status", chat.getChatStatus());
+        return map;
+    }
+
+    private static Map<String, Object> toMap(ListMember member) {
+        Map<String, Object> map = new HashMap<>();
+        putIfNotNull(map, "member_id_type", member.getMemberIdType());
+        putIfNotNull(map, "member_id", member.getMemberId());
+        putIfNotNull(map, "name", member.getName());
+        putIfNotNull(map, "tenant_key", member.getTenantKey());
+        return map;
+    }
+
+    private static void putIfNotNull(Map<String, Object> map, String key, Object value) {
+        if (value != null) {
+            map.put(key, value);
+        }
+    }
+
+    public static class Builder {
+        private final String appId;
+        private final String appSecret;
+        private ExecutorService executor;
+        private String baseUrl = "https://open.feishu.cn";
+        private IHttpTransport transport;
+        private long connectTimeoutMillis = 3000;
+        private long readTimeoutMillis = 10000;
+        private long callTimeoutMillis = 30000;
+        private int maxIdleConnections = 32;
+        private long keepAliveMillis = TimeUnit.MINUTES.toMillis(5);
+        private boolean http2 = true;
+        private int prewarmConnections;
+        private TenantTokenManager tokenManager;
+        private OkHttpClient okHttpClient; // 由newClient创建，预热时使用
+
+        private Builder(String appId, String appSecret) {
+            this.appId = appId;
+            this.appSecret = appSecret;
+        }
+
+        /**
+         * @param executor 异步发送使用的执行器，生命周期由调用方管理；不设置时由机器人创建并在shutdown时关闭
+         */
+        public Builder executor(ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * @param baseUrl 开放平台地址，默认飞书；海外版Lark为 https://open.larksuite.com
+         */
+        public Builder baseUrl(String baseUrl) {
+            this.baseUrl = baseUrl;
+            return this;
+        }
+
+        /**
+         * 使用自定义的HTTP传输，设置后连接池、超时、HTTP/2与预热选项均不生效
+         * @param transport SDK的HTTP传输实现
+         */
+        public Builder httpTransport(IHttpTransport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * @param timeout 建立连接（含TLS握手）的超时
+         * @param unit 超时单位
+         */
+        public Builder connectTimeout(long timeout, TimeUnit unit) {
+            this.connectTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * @param timeout 读取响应时两次数据到达之间的超时，上传下载大文件时需适当放大
+         * @param unit 超时单位
+         */
+        public Builder readTimeout(long timeout, TimeUnit unit) {
+            this.readTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * @param timeout 单次请求从发起到读完响应的总超时，0表示不限制
+         * @param unit 超时单位
+         */
+        public Builder callTimeout(long timeout, TimeUnit unit) {
+            this.callTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * @param maxIdleConnections 连接池保留的最大空闲连接数，应不小于并发发送的线程数
+         * @param keepAlive 空闲连接的保留时间
+         * @param unit 时间单位
+         */
+        public Builder connectionPool(int maxIdleConnections, long keepAlive, TimeUnit unit) {
+            this.maxIdleConnections = maxIdleConnections;
+            this.keepAliveMillis = unit.toMillis(keepAlive);
+            return this;
+        }
+
+        /**
+         * 是否协商HTTP/2，协商成功时所有请求复用同一条连接；服务端或JDK不支持ALPN时自动回退HTTP/1.1
+         */
+        public Builder http2(boolean http2) {
+            this.http2 = http2;
+            return this;
+        }
+
+        /**
+         * 创建后在后台预先建立连接，使启动后的第一批消息不必等待DNS解析与TLS握手。
+         * 使用HTTP/2时多条请求共用一条连接，通常设为1即可
+         * @param connections 预热的连接数，0表示不预热
+         */
+        public Builder prewarm(int connections) {
+            this.prewarmConnections = connections;
+            return this;
+        }
+
+        /**
+         * @param tokenManager 租户访问凭证管理器，同一appId的机器人共用，提前刷新凭证；
+         *                     设置后未指定httpTransport时，下载图片与文件边读边写，不再在内存中缓冲整个文件
+         */
+        public Builder tenantTokenManager(TenantTokenManager tokenManager) {
+            this.tokenManager = tokenManager;
+            return this;
+        }
+
+        public LarkBot build() {
+            LarkBot bot = new LarkBot(this);
+            bot.setTenantTokenManager(tokenManager);
+            if (prewarmConnections > 0 && okHttpClient != null) {
+                prewarm(bot.executor, okHttpClient, baseUrl, prewarmConnections);
+            }
+            return bot;
+        }
+
+        private Client newClient() {
+            IHttpTransport httpTransport = transport;
+            okHttpClient = null;
+            if (httpTransport == null) {
+                okHttpClient = new OkHttpClient.Builder()
+                    .connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+                    .readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+                    .writeTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+                    .callTimeout(callTimeoutMillis, TimeUnit.MILLISECONDS)
+                    .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveMillis, TimeUnit.MILLISECONDS))
+                    .protocols(http2 ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                        : Arrays.asList(Protocol.HTTP_1_1))
+                    .build();
+                httpTransport = new OkHttpTransport(okHttpClient);
+            }
+            return Client.newBuilder(appId, appSecret)
+                .openBaseUrl(baseUrl)
+                .httpTransport(httpTransport)
+                .build();
+        }
+
+        /**
+         * 并发发起若干HEAD请求，握手完成的连接留在连接池中供后续请求复用；失败只记录日志
+         */
+        private static void prewarm(ExecutorService executor, OkHttpClient okHttpClient, String baseUrl, int connections) {
+            Request request = new Request.Builder().url(baseUrl).head().build();
+            for (int i = 0; i < connections; i++) {
+                executor.execute(() -> {
+                    try (Response ignored = okHttpClient.newCall(request).execute()) {
+                        log.debug("Prewarmed connection to {}", baseUrl);
+                    } catch (Exception e) {
+                        log.warn("Failed to prewarm connection to {}", baseUrl, e);
+                    }
+                });
+            }
         }
     }
 }
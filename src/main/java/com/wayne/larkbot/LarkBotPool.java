@@ -0,0 +1,736 @@
+package com.wayne.larkbot;
+
+import com.lark.oapi.core.utils.Jsons;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 多应用机器人池：持有多个应用的机器人，按接收者ID在一致性哈希环上选择应用，
+ * 同一个群始终由同一个应用发送，增加应用即可按比例提高总发送配额，且只有约 1/N 的群改由新应用发送。
+ * 某个应用触发应用级限流时，在冷却期内把原本路由到它的群顺延给环上的下一个应用，其他群不受影响；
+ * 触发限流的那条消息也立即改由下一个应用重发，而不是在原应用上等待重试。
+ * <p>
+ * 使用前需把每个应用的机器人都加入目标群。open_id 按应用隔离，同一用户在不同应用下的open_id不同，
+ * 因此发给用户的消息（receive_id_type 为 open_id）固定由第一个应用发送，open_id 需通过该应用获取；
+ * user_id、union_id 与 chat_id 在应用之间通用，按哈希环路由。
+ */
+public class LarkBotPool {
+    private static final Logger log = LoggerFactory.getLogger(LarkBotPool.class);
+
+    private final String[] appIds;
+    private final LarkBot[] bots;
+    private final List<LarkBot> ownedBots;
+    private final long[] ringHashes; // 升序排列的虚拟节点哈希
+    private final int[] ringOwners; // 与ringHashes对应的应用下标
+    private final long cooldownNanos;
+    private final AtomicLongArray throttledUntil; // 限流冷却结束的nanoTime，0表示未限流
+
+    private LarkBotPool(Builder builder) {
+        int size = builder.appIds.size();
+        this.appIds = builder.appIds.toArray(new String[0]);
+        this.bots = builder.bots.toArray(new LarkBot[0]);
+        this.ownedBots = new ArrayList<>(builder.ownedBots);
+        this.cooldownNanos = builder.cooldownNanos;
+        this.throttledUntil = new AtomicLongArray(size);
+
+        int points = size * builder.virtualNodes;
+        long[] hashes = new long[points];
+        Integer[] order = new Integer[points];
+        for (int i = 0; i < points; i++) {
+            hashes[i] = hash(appIds[i / builder.virtualNodes] + "#" + (i % builder.virtualNodes));
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        this.ringHashes = new long[points];
+        this.ringOwners = new int[points];
+        for (int i = 0; i < points; i++) {
+            ringHashes[i] = hashes[order[i]];
+            ringOwners[i] = order[i] / builder.virtualNodes;
+        }
+
+        for (LarkBot bot : bots) {
+            if (bot.hasThrottleListener()) {
+                throw new IllegalArgumentException("Bot already belongs to another LarkBotPool");
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            int index = i;
+            bots[i].setThrottleListener((receiveIdType, receiveId) -> {
+                onThrottled(index);
+                // 全部应用都已限流时route返回原应用，由原应用按重试策略等待
+                return bots[route(receiveIdType, receiveId)];
+            });
+        }
+    }
+
+    /**
+     * @return 构建器
+     */
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * 选择发送给该接收者的机器人，可用于池未提供的接口
+     * @param receiveIdType 接收者ID类型 ('open_id'、'user_id'、'union_id' 或 'chat_id')
+     * @param receiveId 接收者的ID
+     * @return 机器人
+     */
+    public LarkBot getBot(String receiveIdType, String receiveId) {
+        return bots[route(receiveIdType, receiveId)];
+    }
+
+    /**
+     * @return 池中全部机器人，顺序与添加顺序一致
+     */
+    public List<LarkBot> getBots() {
+        return Collections.unmodifiableList(Arrays.asList(bots));
+    }
+
+    /**
+     * @return 当前处于限流冷却期的应用ID
+     */
+    public List<String> getThrottledAppIds() {
+        List<String> throttled = new ArrayList<>();
+        long now = System.nanoTime();
+        for (int i = 0; i < appIds.length; i++) {
+            if (isThrottled(i, now)) {
+                throttled.add(appIds[i]);
+            }
+        }
+        return throttled;
+    }
+
+    /**
+     * 关闭由池通过 Builder.addApp 创建的机器人，通过 Builder.addBot 传入的机器人不受影响
+     */
+    public void shutdown() {
+        for (LarkBot bot : ownedBots) {
+            bot.shutdown();
+        }
+    }
+
+    int route(String receiveIdType, String receiveId) {
+        if ("open_id".equals(receiveIdType)) {
+            return 0;
+        }
+        int start = Arrays.binarySearch(ringHashes, hash(receiveId));
+        if (start < 0) {
+            start = -start - 1;
+        }
+        if (start == ringHashes.length) {
+            start = 0;
+        }
+        int primary = ringOwners[start];
+        long now = System.nanoTime();
+        if (!isThrottled(primary, now)) {
+            return primary;
+        }
+        // 顺时针找到第一个未限流的应用，全部限流时仍使用原应用
+        for (int i = 1; i < ringOwners.length; i++) {
+            int owner = ringOwners[(start + i) % ringOwners.length];
+            if (!isThrottled(owner, now)) {
+                return owner;
+            }
+        }
+        return primary;
+    }
+
+    private boolean isThrottled(int index, long now) {
+        long until = throttledUntil.get(index);
+        return until != 0 && until - now > 0;
+    }
+
+    private void onThrottled(int index) {
+        long now = System.nanoTime();
+        long previous = throttledUntil.getAndSet(index, now + cooldownNanos);
+        if (previous == 0 || previous - now <= 0) {
+            log.warn("App {} is rate limited, routing its receivers to other apps for {} ms",
+                appIds[index], TimeUnit.NANOSECONDS.toMillis(cooldownNanos));
+        }
+    }
+
+    /**
+     * 64位哈希：逐字符混合后做一次雪崩混合，使相近的ID在环上均匀分布
+     */
+    private static long hash(String value) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * 发送消息并返回结构化结果。调用方自行重试时传入同一个uuid，服务端会在1小时内对相同uuid去重
+     * @param receiveIdType 接收者ID类型 ('open_id' 或 'chat_id')
+     * @param receiveId 接收者的ID
+     * @param msgType 消息类型
+     * @param content 消息内容
+     * @param uuid 请求去重标识，为null时自动生成
+     * @return 消息发送结果，请求异常记录在结果中而不会抛出
+     */
+    public SendResult sendMessageWithResult(String receiveIdType, String receiveId, String msgType, String content,
+                                            String uuid) throws InterruptedException {
+        return getBot(receiveIdType, receiveId).sendMessageWithResult(receiveIdType, receiveId, msgType, content, uuid);
+    }
+
+    /**
+     * 发送文本消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param text 文本消息
+     * @return 消息发送结果
+     */
+    public String sendTextToUser(String userOpenId, String text) throws Exception {
+        return getBot("open_id", userOpenId).sendTextToUser(userOpenId, text);
+    }
+
+    /**
+     * 发送文本消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param text 文本消息
+     * @return 消息发送结果
+     */
+    public String sendTextToChat(String chatId, String text) throws Exception {
+        return getBot("chat_id", chatId).sendTextToChat(chatId, text);
+    }
+
+    /**
+     * 发送由构造器生成的文本消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param text 文本消息构造器
+     * @return 消息发送结果
+     */
+    public String sendTextToUser(String userOpenId, TextContent.Builder text) throws Exception {
+        return getBot("open_id", userOpenId).sendTextToUser(userOpenId, text);
+    }
+
+    /**
+     * 发送由构造器生成的文本消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param text 文本消息构造器
+     * @return 消息发送结果
+     */
+    public String sendTextToChat(String chatId, TextContent.Builder text) throws Exception {
+        return getBot("chat_id", chatId).sendTextToChat(chatId, text);
+    }
+
+    /**
+     * 发送图片消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param imageKey 图片的key
+     * @return 消息发送结果
+     */
+    public String sendImageToUser(String userOpenId, String imageKey) throws Exception {
+        return getBot("open_id", userOpenId).sendImageToUser(userOpenId, imageKey);
+    }
+
+    /**
+     * 发送图片消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param imageKey 图片的key
+     * @return 消息发送结果
+     */
+    public String sendImageToChat(String chatId, String imageKey) throws Exception {
+        return getBot("chat_id", chatId).sendImageToChat(chatId, imageKey);
+    }
+
+    /**
+     * 发送交互消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param interactive 交互消息内容
+     * @return 消息发送结果
+     */
+    public String sendInteractiveToUser(String userOpenId, Map<String, Object> interactive) throws Exception {
+        return getBot("open_id", userOpenId).sendInteractiveToUser(userOpenId, interactive);
+    }
+
+    /**
+     * 发送交互消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param interactive 交互消息内容
+     * @return 消息发送结果
+     */
+    public String sendInteractiveToChat(String chatId, Map<String, Object> interactive) throws Exception {
+        return getBot("chat_id", chatId).sendInteractiveToChat(chatId, interactive);
+    }
+
+    /**
+     * 发送共享聊天消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param sharedChatId 共享聊天ID
+     * @return 消息发送结果
+     */
+    public String sendSharedChatToUser(String userOpenId, String sharedChatId) throws Exception {
+        return getBot("open_id", userOpenId).sendSharedChatToUser(userOpenId, sharedChatId);
+    }
+
+    /**
+     * 发送共享聊天消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param sharedChatId 共享聊天ID
+     * @return 消息发送结果
+     */
+    public String sendSharedChatToChat(String chatId, String sharedChatId) throws Exception {
+        return getBot("chat_id", chatId).sendSharedChatToChat(chatId, sharedChatId);
+    }
+
+    /**
+     * 发送共享用户消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param sharedUserId 共享用户的ID
+     * @return 消息发送结果
+     */
+    public String sendSharedUserToUser(String userOpenId, String sharedUserId) throws Exception {
+        return getBot("open_id", userOpenId).sendSharedUserToUser(userOpenId, sharedUserId);
+    }
+
+    /**
+     * 发送共享用户消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param sharedUserId 共享用户的ID
+     * @return 消息发送结果
+     */
+    public String sendSharedUserToChat(String chatId, String sharedUserId) throws Exception {
+        return getBot("chat_id", chatId).sendSharedUserToChat(chatId, sharedUserId);
+    }
+
+    /**
+     * 发送音频消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param fileKey 音频的key
+     * @return 消息发送结果
+     */
+    public String sendAudioToUser(String userOpenId, String fileKey) throws Exception {
+        return getBot("open_id", userOpenId).sendAudioToUser(userOpenId, fileKey);
+    }
+
+    /**
+     * 发送音频消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param fileKey 音频的key
+     * @return 消息发送结果
+     */
+    public String sendAudioToChat(String chatId, String fileKey) throws Exception {
+        return getBot("chat_id", chatId).sendAudioToChat(chatId, fileKey);
+    }
+
+    /**
+     * 发送媒体消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param fileKey 媒体的key
+     * @return 消息发送结果
+     */
+    public String sendMediaToUser(String userOpenId, String fileKey) throws Exception {
+        return getBot("open_id", userOpenId).sendMediaToUser(userOpenId, fileKey);
+    }
+
+    /**
+     * 发送媒体消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param fileKey 媒体的key
+     * @return 消息发送结果
+     */
+    public String sendMediaToChat(String chatId, String fileKey) throws Exception {
+        return getBot("chat_id", chatId).sendMediaToChat(chatId, fileKey);
+    }
+
+    /**
+     * 发送文件消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param fileKey 文件的key
+     * @return 消息发送结果
+     */
+    public String sendFileToUser(String userOpenId, String fileKey) throws Exception {
+        return getBot("open_id", userOpenId).sendFileToUser(userOpenId, fileKey);
+    }
+
+    /**
+     * 发送文件消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param fileKey 文件的key
+     * @return 消息发送结果
+     */
+    public String sendFileToChat(String chatId, String fileKey) throws Exception {
+        return getBot("chat_id", chatId).sendFileToChat(chatId, fileKey);
+    }
+
+    /**
+     * 发送系统消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param systemMsgText 系统消息内容
+     * @return 消息发送结果
+     */
+    public String sendSystemMsgToUser(String userOpenId, String systemMsgText) throws Exception {
+        return getBot("open_id", userOpenId).sendSystemMsgToUser(userOpenId, systemMsgText);
+    }
+
+    /**
+     * 发送帖子消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param postContent 帖子消息内容
+     * @return 消息发送结果
+     */
+    public String sendPostToUser(String userOpenId, Object postContent) throws Exception {
+        return getBot("open_id", userOpenId).sendPostToUser(userOpenId, postContent);
+    }
+
+    /**
+     * 发送帖子消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param post 帖子消息构造器
+     * @return 消息发送结果
+     */
+    public String sendPostToUser(String userOpenId, PostBuilder post) throws Exception {
+        return getBot("open_id", userOpenId).sendPostToUser(userOpenId, post);
+    }
+
+    /**
+     * 发送帖子消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param postContent 帖子消息内容
+     * @return 消息发送结果
+     */
+    public String sendPostToChat(String chatId, Map<String, Object> postContent) throws Exception {
+        return getBot("chat_id", chatId).sendPostToChat(chatId, postContent);
+    }
+
+    /**
+     * 发送帖子消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param post 帖子消息构造器
+     * @return 消息发送结果
+     */
+    public String sendPostToChat(String chatId, PostBuilder post) throws Exception {
+        return getBot("chat_id", chatId).sendPostToChat(chatId, post);
+    }
+
+    /**
+     * 发送帖子消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param post 帖子消息
+     * @return 消息发送结果
+     */
+    public String sendPostToChat(String chatId, PostContent post) throws Exception {
+        return getBot("chat_id", chatId).sendPostToChat(chatId, post);
+    }
+
+    /**
+     * 异步发送消息
+     * @param receiveIdType 接收者ID类型 ('open_id' 或 'chat_id')
+     * @param receiveId 接收者的ID
+     * @param msgType 消息类型
+     * @param content 消息内容
+     * @return 消息发送结果的Future，可通过cancel取消发送
+     */
+    public CompletableFuture<String> sendMessageAsync(String receiveIdType, String receiveId, String msgType, String content) {
+        return getBot(receiveIdType, receiveId).sendMessageAsync(receiveIdType, receiveId, msgType, content);
+    }
+
+    /**
+     * 异步发送消息，超时后Future以TimeoutException完成并中断请求
+     * @param receiveIdType 接收者ID类型 ('open_id' 或 'chat_id')
+     * @param receiveId 接收者的ID
+     * @param msgType 消息类型
+     * @param content 消息内容
+     * @param timeout 超时时间，小于等于0表示不限制
+     * @param unit 超时时间单位
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<String> sendMessageAsync(String receiveIdType, String receiveId, String msgType, String content,
+                                                      long timeout, TimeUnit unit) {
+        return getBot(receiveIdType, receiveId).sendMessageAsync(receiveIdType, receiveId, msgType, content, timeout, unit);
+    }
+
+    /**
+     * 异步发送消息并返回完整结果，请求异常记录在结果中
+     * @param receiveIdType 接收者ID类型 ('open_id' 或 'chat_id')
+     * @param receiveId 接收者的ID
+     * @param msgType 消息类型
+     * @param content 消息内容
+     * @param uuid 请求去重标识，为null时自动生成
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<SendResult> sendMessageWithResultAsync(String receiveIdType, String receiveId, String msgType,
+                                                                    String content, String uuid) {
+        return getBot(receiveIdType, receiveId).sendMessageWithResultAsync(receiveIdType, receiveId, msgType, content, uuid);
+    }
+
+    /**
+     * 异步发送文本消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param text 文本消息
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<String> sendTextToUserAsync(String userOpenId, String text) {
+        return getBot("open_id", userOpenId).sendTextToUserAsync(userOpenId, text);
+    }
+
+    /**
+     * 异步发送文本消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param text 文本消息
+     * @param timeout 超时时间，小于等于0表示不限制
+     * @param unit 超时时间单位
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<String> sendTextToUserAsync(String userOpenId, String text, long timeout, TimeUnit unit) {
+        return getBot("open_id", userOpenId).sendTextToUserAsync(userOpenId, text, timeout, unit);
+    }
+
+    /**
+     * 异步发送文本消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param text 文本消息
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<String> sendTextToChatAsync(String chatId, String text) {
+        return getBot("chat_id", chatId).sendTextToChatAsync(chatId, text);
+    }
+
+    /**
+     * 异步发送文本消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param text 文本消息
+     * @param timeout 超时时间，小于等于0表示不限制
+     * @param unit 超时时间单位
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<String> sendTextToChatAsync(String chatId, String text, long timeout, TimeUnit unit) {
+        return getBot("chat_id", chatId).sendTextToChatAsync(chatId, text, timeout, unit);
+    }
+
+    /**
+     * 异步发送图片消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param imageKey 图片的key
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<String> sendImageToUserAsync(String userOpenId, String imageKey) {
+        return getBot("open_id", userOpenId).sendImageToUserAsync(userOpenId, imageKey);
+    }
+
+    /**
+     * 异步发送图片消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param imageKey 图片的key
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<String> sendImageToChatAsync(String chatId, String imageKey) {
+        return getBot("chat_id", chatId).sendImageToChatAsync(chatId, imageKey);
+    }
+
+    /**
+     * 异步发送交互消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param interactive 交互消息内容
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<String> sendInteractiveToUserAsync(String userOpenId, Map<String, Object> interactive) {
+        return getBot("open_id", userOpenId).sendInteractiveToUserAsync(userOpenId, interactive);
+    }
+
+    /**
+     * 异步发送交互消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param interactive 交互消息内容
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<String> sendInteractiveToChatAsync(String chatId, Map<String, Object> interactive) {
+        return getBot("chat_id", chatId).sendInteractiveToChatAsync(chatId, interactive);
+    }
+
+    /**
+     * 异步发送帖子消息给特定用户
+     * @param userOpenId 用户的open_id
+     * @param postContent 帖子消息内容
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<String> sendPostToUserAsync(String userOpenId, Object postContent) {
+        return getBot("open_id", userOpenId).sendPostToUserAsync(userOpenId, postContent);
+    }
+
+    /**
+     * 异步发送帖子消息给特定聊天群组
+     * @param chatId 群组的chat_id
+     * @param postContent 帖子消息内容
+     * @return 消息发送结果的Future
+     */
+    public CompletableFuture<String> sendPostToChatAsync(String chatId, Map<String, Object> postContent) {
+        return getBot("chat_id", chatId).sendPostToChatAsync(chatId, postContent);
+    }
+
+    /**
+     * 将同一条消息广播给多个接收者，阻塞直到全部完成。接收者按路由分组后由各自的机器人并行发送。
+     * 在池中某个机器人的异步任务中调用时改为逐个应用依次广播，以免有界执行器的线程都在等待而死锁
+     * @param receiveIdType 接收者ID类型 ('open_id' 或 'chat_id')
+     * @param receiveIds 接收者ID列表
+     * @param msgType 消息类型
+     * @param content 已序列化的消息内容
+     * @param concurrency 每个应用同时进行中的请求数上限
+     * @return 每个接收者的发送结果，顺序与receiveIds一致
+     */
+    public BroadcastReport broadcast(String receiveIdType, List<String> receiveIds, String msgType, String content,
+                                     int concurrency) {
+        boolean onBotExecutor = false;
+        for (LarkBot bot : bots) {
+            onBotExecutor |= bot.isRunningOnExecutor();
+        }
+        if (!onBotExecutor) {
+            return broadcastAsync(receiveIdType, receiveIds, msgType, content, concurrency).join();
+        }
+        long start = System.nanoTime();
+        SendResult[] results = new SendResult[receiveIds.size()];
+        for (Map.Entry<Integer, List<Integer>> group : groupByBot(receiveIdType, receiveIds).entrySet()) {
+            List<Integer> positions = group.getValue();
+            BroadcastReport report = bots[group.getKey()].broadcast(receiveIdType, select(receiveIds, positions),
+                msgType, content, concurrency);
+            fill(results, positions, report);
+        }
+        return new BroadcastReport(Arrays.asList(results), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * 将同一条文本消息广播给多个接收者
+     * @param receiveIdType 接收者ID类型 ('open_id' 或 'chat_id')
+     * @param receiveIds 接收者ID列表
+     * @param text 文本消息
+     * @param concurrency 每个应用同时进行中的请求数上限
+     * @return 每个接收者的发送结果，顺序与receiveIds一致
+     */
+    public BroadcastReport broadcastText(String receiveIdType, List<String> receiveIds, String text, int concurrency) {
+        String content = Jsons.DEFAULT.toJson(Collections.singletonMap("text", text));
+        return broadcast(receiveIdType, receiveIds, "text", content, concurrency);
+    }
+
+    /**
+     * 异步广播。接收者按路由分组，每个应用任意时刻最多有concurrency个请求在进行中；
+     * 发送中触发限流时由该应用的机器人改投其他应用，与单条发送一致
+     * @param receiveIdType 接收者ID类型 ('open_id' 或 'chat_id')
+     * @param receiveIds 接收者ID列表
+     * @param msgType 消息类型
+     * @param content 已序列化的消息内容
+     * @param concurrency 每个应用同时进行中的请求数上限
+     * @return 广播结果的Future，结果顺序与receiveIds一致
+     */
+    public CompletableFuture<BroadcastReport> broadcastAsync(String receiveIdType, List<String> receiveIds, String msgType,
+                                                             String content, int concurrency) {
+        long start = System.nanoTime();
+        SendResult[] results = new SendResult[receiveIds.size()];
+        List<CompletableFuture<Void>> parts = new ArrayList<>();
+        for (Map.Entry<Integer, List<Integer>> group : groupByBot(receiveIdType, receiveIds).entrySet()) {
+            List<Integer> positions = group.getValue();
+            parts.add(bots[group.getKey()].broadcastAsync(receiveIdType, select(receiveIds, positions), msgType, content,
+                concurrency).thenAccept(report -> fill(results, positions, report)));
+        }
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0]))
+            .thenApply(ignored -> new BroadcastReport(Arrays.asList(results),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+
+    /**
+     * @return 机器人下标到其负责的接收者在receiveIds中的位置
+     */
+    private Map<Integer, List<Integer>> groupByBot(String receiveIdType, List<String> receiveIds) {
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < receiveIds.size(); i++) {
+            groups.computeIfAbsent(route(receiveIdType, receiveIds.get(i)), index -> new ArrayList<>()).add(i);
+        }
+        return groups;
+    }
+
+    private static List<String> select(List<String> receiveIds, List<Integer> positions) {
+        List<String> selected = new ArrayList<>(positions.size());
+        for (int position : positions) {
+            selected.add(receiveIds.get(position));
+        }
+        return selected;
+    }
+
+    private static void fill(SendResult[] results, List<Integer> positions, BroadcastReport report) {
+        List<SendResult> partial = report.getResults();
+        for (int i = 0; i < positions.size(); i++) {
+            results[positions.get(i)] = partial.get(i);
+        }
+    }
+
+    public static class Builder {
+        private final List<String> appIds = new ArrayList<>();
+        private final List<LarkBot> bots = new ArrayList<>();
+        private final List<LarkBot> ownedBots = new ArrayList<>();
+        private int virtualNodes = 160;
+        private long cooldownNanos = TimeUnit.SECONDS.toNanos(10);
+
+        private Builder() {
+        }
+
+        /**
+         * 添加一个应用，由池创建并在shutdown时关闭其机器人
+         * @param appId 应用ID
+         * @param appSecret 应用密钥
+         */
+        public Builder addApp(String appId, String appSecret) {
+            LarkBot bot = LarkBot.newBuilder(appId, appSecret).build();
+            addBot(appId, bot);
+            ownedBots.add(bot);
+            return this;
+        }
+
+        /**
+         * 添加已创建的机器人，例如配置了凭证管理或自定义传输的机器人。
+         * 池会设置机器人的限流回调，因此一个机器人只能属于一个池，已属于其他池时build抛出IllegalArgumentException
+         * @param appId 机器人所属的应用ID，决定其在哈希环上的位置
+         * @param bot 机器人
+         */
+        public Builder addBot(String appId, LarkBot bot) {
+            if (appIds.contains(appId)) {
+                throw new IllegalArgumentException("Duplicate app " + appId);
+            }
+            appIds.add(appId);
+            bots.add(bot);
+            return this;
+        }
+
+        /**
+         * @param virtualNodes 每个应用在哈希环上的虚拟节点数，越多各应用分到的群越均匀
+         */
+        public Builder virtualNodes(int virtualNodes) {
+            if (virtualNodes < 1) {
+                throw new IllegalArgumentException("virtualNodes must be at least 1");
+            }
+            this.virtualNodes = virtualNodes;
+            return this;
+        }
+
+        /**
+         * @param cooldown 应用触发限流后暂停向其路由的时间
+         * @param unit 时间单位
+         */
+        public Builder throttleCooldown(long cooldown, TimeUnit unit) {
+            this.cooldownNanos = unit.toNanos(cooldown);
+            return this;
+        }
+
+        public LarkBotPool build() {
+            if (bots.isEmpty()) {
+                throw new IllegalStateException("LarkBotPool needs at least one app");
+            }
+            return new LarkBotPool(this);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.wayne.larkbot;
+
+/**
+ * 飞书开放平台错误码分类
+ */
+final class LarkErrorCodes {
+    /** 应用级接口频率限制 */
+    static final int APP_RATE_LIMITED = 99991400;
+    /** 消息发送频率限制（同一用户或群） */
+    static final int MESSAGE_RATE_LIMITED = 230020;
+    /** 访问凭证无效 */
+    static final int ACCESS_TOKEN_INVALID = 99991663;
+    /** 访问凭证已过期 */
+    static final int ACCESS_TOKEN_EXPIRED = 99991677;
+
+    private LarkErrorCodes() {
+    }
+
+    /**
+     * @param code 飞书错误码
+     * @return 是否为限流错误
+     */
+    static boolean isRateLimited(int code) {
+        return code == APP_RATE_LIMITED || code == MESSAGE_RATE_LIMITED;
+    }
+
+    /**
+     * @param code 飞书错误码
+     * @return 是否为访问凭证无效或过期，需要获取新凭证
+     */
+    static boolean isTokenInvalid(int code) {
+        return code == ACCESS_TOKEN_INVALID || code == ACCESS_TOKEN_EXPIRED;
+    }
+
+    /**
+     * 参数错误、权限不足、机器人不在群内等错误重试也不会成功，只有限流属于暂时性错误；
+     * 网关5xx等没有业务错误码的失败会以异常形式抛出，由调用方单独判断
+     * @param code 飞书错误码
+     * @return 是否值得重试
+     */
+    static boolean isRetryable(int code) {
+        return isRateLimited(code);
+    }
+}
@@ -0,0 +1,214 @@
+package com.wayne.larkbot;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * 异步发送所用的线程池工具
+ */
+public final class LarkExecutors {
+    private static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+    // 所有异步调用共享的超时计时器
+    private static final ScheduledThreadPoolExecutor TIMER = newTimer();
+    // 当前线程正在执行的submit任务所属的执行器
+    private static final ThreadLocal<ExecutorService> CURRENT = new ThreadLocal<>();
+
+    private LarkExecutors() {
+    }
+
+    /**
+     * 创建默认执行器：运行在 21+ 时使用虚拟线程，否则使用有界线程池
+     * @return 执行器
+     */
+    public static ExecutorService newDefaultExecutor() {
+        ExecutorService virtual = newVirtualThreadExecutor();
+        if (virtual != null) {
+            return virtual;
+        }
+        return newBoundedExecutor(Runtime.getRuntime().availableProcessors() * 8, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * 创建有界线程池，队列满时拒绝新任务
+     * @param maxThreads 最大线程数
+     * @param queueCapacity 等待队列容量
+     * @return 执行器
+     */
+    public static ExecutorService newBoundedExecutor(int maxThreads, int queueCapacity) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            maxThreads, maxThreads,
+            60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            daemonThreadFactory("lark-bot-sender"),
+            new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 创建虚拟线程执行器
+     * @return 执行器，运行时不支持虚拟线程时返回null
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 在执行器上异步执行任务，支持超时与取消
+     * @param executor 执行器
+     * @param task 任务
+     * @param timeout 超时时间，小于等于0表示不限制
+     * @param unit 超时时间单位
+     * @return 任务结果，超时时以TimeoutException完成；取消时会中断正在执行的任务
+     */
+    static <T> CompletableFuture<T> submit(ExecutorService executor, Callable<T> task, long timeout, TimeUnit unit) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> future;
+        try {
+            future = executor.submit(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                ExecutorService previous = CURRENT.get();
+                CURRENT.set(executor);
+                try {
+                    result.complete(task.call());
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                } finally {
+                    if (previous == null) {
+                        CURRENT.remove();
+                    } else {
+                        CURRENT.set(previous);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+
+        if (timeout > 0) {
+            ScheduledFuture<?> timer = TIMER.schedule(
+                () -> result.completeExceptionally(new TimeoutException("Lark call timed out after " + unit.toMillis(timeout) + "ms")),
+                timeout, unit);
+            result.whenComplete((value, error) -> timer.cancel(false));
+        }
+
+        // 超时或被取消时中断底层请求
+        result.whenComplete((value, error) -> {
+            if (error != null && !future.isDone()) {
+                future.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 当前线程是否正在执行经submit提交到该执行器的任务，此时在同一执行器上阻塞等待其他任务可能死锁
+     * @param executor 执行器
+     * @return 是否正在该执行器上执行
+     */
+    static boolean isRunningOn(ExecutorService executor) {
+        return CURRENT.get() == executor;
+    }
+
+    /**
+     * 以有界并发执行一组任务：任意时刻最多concurrency个任务在执行，每完成一个立即启动下一个
+     * @param executor 执行器
+     * @param count 任务数量
+     * @param concurrency 并发上限
+     * @param taskFactory 根据下标创建任务
+     * @param callback 每个任务完成时回调，任务失败时result为null
+     * @return 所有任务完成后完成的Future
+     */
+    static <R> CompletableFuture<Void> runBounded(ExecutorService executor, int count, int concurrency,
+                                                  IntFunction<Callable<R>> taskFactory, IndexedCallback<R> callback) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency must be positive: " + concurrency);
+        }
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (count == 0) {
+            done.complete(null);
+            return done;
+        }
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger remaining = new AtomicInteger(count);
+        Runnable[] chain = new Runnable[1];
+        chain[0] = () -> {
+            while (true) {
+                int index = next.getAndIncrement();
+                if (index >= count) {
+                    return;
+                }
+                CompletableFuture<Void> finished = submit(executor, taskFactory.apply(index), 0, TimeUnit.MILLISECONDS)
+                    .handle((result, error) -> {
+                        try {
+                            callback.accept(index, result, unwrap(error));
+                        } finally {
+                            if (remaining.decrementAndGet() == 0) {
+                                done.complete(null);
+                            }
+                        }
+                        return null;
+                    });
+                // 同步完成（如执行器拒绝）时直接循环，避免递归过深
+                if (!finished.isDone()) {
+                    finished.whenComplete((ignored, error) -> chain[0].run());
+                    return;
+                }
+            }
+        };
+        for (int i = 0; i < Math.min(concurrency, count); i++) {
+            chain[0].run();
+        }
+        return done;
+    }
+
+    static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * 带下标的任务完成回调
+     */
+    interface IndexedCallback<R> {
+        void accept(int index, R result, Throwable error);
+    }
+
+    static ThreadFactory daemonThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static ScheduledThreadPoolExecutor newTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, daemonThreadFactory("lark-bot-timer"));
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+}
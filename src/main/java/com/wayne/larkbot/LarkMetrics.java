@@ -0,0 +1,32 @@
+package com.wayne.larkbot;
+
+/**
+ * 开放平台接口调用的指标回调：每次调用结束后记录耗时、错误码与请求ID。
+ * 实现需线程安全且尽量轻量，回调在发起请求的线程上同步执行。
+ */
+public interface LarkMetrics {
+    /** 不记录任何指标的默认实现 */
+    LarkMetrics NOOP = (api, latencyNanos, code, requestId, error) -> { };
+
+    String SEND_MESSAGE = "im.message.create";
+    String PATCH_MESSAGE = "im.message.patch";
+    String GET_USER_ID = "contact.user.batch_get_id";
+    String LIST_CHATS = "im.chat.list";
+    String GET_CHAT_MEMBERS = "im.chat_members.get";
+    String UPLOAD_IMAGE = "im.image.create";
+    String DOWNLOAD_IMAGE = "im.image.get";
+    String UPLOAD_FILE = "im.file.create";
+    String DOWNLOAD_FILE = "im.file.get";
+    /** TenantTokenManager 获取租户凭证，由它自行发起请求，不经过SDK */
+    String TENANT_ACCESS_TOKEN = "auth.v3.tenant_access_token.internal";
+
+    /**
+     * 记录一次接口调用
+     * @param api 接口名，取值见本接口中的常量
+     * @param latencyNanos 调用耗时（纳秒），包含SDK获取token的时间
+     * @param code 飞书错误码，0表示成功；请求抛出异常时为-1
+     * @param requestId 飞书返回的请求ID，请求抛出异常时为null
+     * @param error 请求抛出的异常，正常返回时为null
+     */
+    void recordCall(String api, long latencyNanos, int code, String requestId, Throwable error);
+}
@@ -0,0 +1,214 @@
+package com.wayne.larkbot;
+
+import com.lark.oapi.Client;
+import com.lark.oapi.service.im.v1.model.GetChatMembersReq;
+import com.lark.oapi.service.im.v1.model.GetChatMembersResp;
+import com.lark.oapi.service.im.v1.model.ListMember;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按chat_id缓存群成员，每个群保存成员名到member_id的索引，用于@提醒时解析成员。
+ * 总容量按成员数计算，超出后淘汰最久未使用的群；条目超过TTL或被显式失效后重新加载。
+ */
+public class MemberCache {
+    private static final int PAGE_SIZE = 100;
+
+    private final Client client;
+    private volatile TenantTokenManager tokenManager; // 为null时由SDK自行获取凭证
+    private volatile ApiCaller caller = ApiCaller.DIRECT;
+    private final long maxWeight;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // 由自身保护
+    private final Map<String, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>(); // 正在进行的加载，invalidate时移除
+    private long totalWeight; // 由entries保护
+
+    /**
+     * @param client 飞书SDK客户端
+     * @param maxWeight 所有群合计最多缓存的成员数
+     * @param ttl 每个群的缓存有效期
+     * @param unit 有效期单位
+     */
+    public MemberCache(Client client, long maxWeight, long ttl, TimeUnit unit) {
+        this.client = client;
+        this.maxWeight = maxWeight;
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    /**
+     * @param tokenManager 提供凭证的管理器，为null时由SDK自行获取
+     */
+    void setTenantTokenManager(TenantTokenManager tokenManager) {
+        this.tokenManager = tokenManager;
+    }
+
+    /**
+     * @param caller 发起SDK调用的方式，由LarkBot设置以记录指标
+     */
+    void setApiCaller(ApiCaller caller) {
+        this.caller = caller;
+    }
+
+    /**
+     * 根据成员名称查找member_id
+     * @param chatId 群组的chat_id
+     * @param memberName 成员名称
+     * @return 匹配成员名称的member_id列表
+     * @throws Exception 加载成员列表失败
+     */
+    public List<String> getMemberIdsByName(String chatId, String memberName) throws Exception {
+        List<String> memberIds = get(chatId).memberIdsByName.get(memberName);
+        return memberIds != null ? memberIds : Collections.emptyList();
+    }
+
+    /**
+     * @param chatId 群组的chat_id
+     * @return 群内全部成员
+     * @throws Exception 加载成员列表失败
+     */
+    public List<ListMember> getMembers(String chatId) throws Exception {
+        return get(chatId).members;
+    }
+
+    /**
+     * 使某个群的缓存失效，例如收到成员变更事件时；正在进行的加载结果不再写入缓存
+     * @param chatId 群组的chat_id
+     */
+    public void invalidate(String chatId) {
+        synchronized (entries) {
+            // 加载可能在成员变更之前读到旧列表，下次查询重新加载
+            loading.remove(chatId);
+            Entry removed = entries.remove(chatId);
+            if (removed != null) {
+                totalWeight -= removed.weight();
+            }
+        }
+    }
+
+    /**
+     * 清空全部缓存
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            loading.clear();
+            entries.clear();
+            totalWeight = 0;
+        }
+    }
+
+    private Entry get(String chatId) throws Exception {
+        synchronized (entries) {
+            Entry entry = entries.get(chatId);
+            if (entry != null && System.nanoTime() - entry.loadedAtNanos <= ttlNanos) {
+                return entry;
+            }
+        }
+
+        // 同一个群的并发加载只发起一次请求
+        CompletableFuture<Entry> future = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = loading.putIfAbsent(chatId, future);
+        if (existing != null) {
+            return join(existing);
+        }
+        try {
+            Entry loaded = fetch(chatId);
+            put(chatId, future, loaded);
+            future.complete(loaded);
+            return loaded;
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(chatId, future);
+        }
+    }
+
+    /**
+     * 写入加载结果；加载期间该群已被invalidate时丢弃
+     */
+    private void put(String chatId, CompletableFuture<Entry> future, Entry entry) {
+        synchronized (entries) {
+            if (loading.get(chatId) != future) {
+                return;
+            }
+            Entry previous = entries.put(chatId, entry);
+            if (previous != null) {
+                totalWeight -= previous.weight();
+            }
+            totalWeight += entry.weight();
+
+            // 按访问顺序淘汰，至少保留刚加载的群
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (totalWeight > maxWeight && entries.size() > 1) {
+                Map.Entry<String, Entry> eldest = it.next();
+                totalWeight -= eldest.getValue().weight();
+                it.remove();
+            }
+        }
+    }
+
+    private Entry fetch(String chatId) throws Exception {
+        List<ListMember> members = new ArrayList<>();
+        String pageToken = null;
+        do {
+            GetChatMembersReq req = GetChatMembersReq.newBuilder()
+                .chatId(chatId)
+                .pageSize(PAGE_SIZE)
+                .pageToken(pageToken)
+                .build();
+            GetChatMembersResp resp = caller.call(LarkMetrics.GET_CHAT_MEMBERS,
+                () -> client.im().chatMembers().get(req, TenantTokenManager.requestOptions(tokenManager)));
+            if (!resp.success()) {
+                throw new LarkApiException("get chat members", resp.getCode(), resp.getMsg(), resp.getRequestId());
+            }
+            if (resp.getData().getItems() != null) {
+                members.addAll(Arrays.asList(resp.getData().getItems()));
+            }
+            pageToken = Boolean.TRUE.equals(resp.getData().getHasMore()) ? resp.getData().getPageToken() : null;
+        } while (pageToken != null && !pageToken.isEmpty());
+        return new Entry(members);
+    }
+
+    private static Entry join(CompletableFuture<Entry> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    private static class Entry {
+        final List<ListMember> members;
+        final Map<String, List<String>> memberIdsByName;
+        final long loadedAtNanos;
+
+        Entry(List<ListMember> members) {
+            this.members = Collections.unmodifiableList(members);
+            Map<String, List<String>> index = new HashMap<>();
+            for (ListMember member : members) {
+                if (member.getName() != null) {
+                    index.computeIfAbsent(member.getName(), name -> new ArrayList<>(1)).add(member.getMemberId());
+                }
+            }
+            index.replaceAll((name, ids) -> Collections.unmodifiableList(ids));
+            this.memberIdsByName = index;
+            this.loadedAtNanos = System.nanoTime();
+        }
+
+        long weight() {
+            return Math.max(1, members.size());
+        }
+    }
+}
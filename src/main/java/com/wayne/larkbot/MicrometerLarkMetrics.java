@@ -0,0 +1,58 @@
+package com.wayne.larkbot;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把接口调用指标写入 Micrometer 注册表（需自行引入 micrometer-core）：
+ * <ul>
+ *     <li>lark.api.requests：耗时直方图，标签 api、outcome（success/error/exception）</li>
+ *     <li>lark.api.errors：飞书错误码计数，标签 api、code</li>
+ *     <li>lark.api.exceptions：请求异常计数，标签 api、exception</li>
+ * </ul>
+ * 请求ID基数过高，不作为标签，失败请求的ID见日志。
+ */
+public class MicrometerLarkMetrics implements LarkMetrics {
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * @param registry Micrometer注册表
+     */
+    public MicrometerLarkMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void recordCall(String api, long latencyNanos, int code, String requestId, Throwable error) {
+        String outcome = error != null ? "exception" : code == 0 ? "success" : "error";
+        timers.computeIfAbsent(api + "\t" + outcome, key -> Timer.builder("lark.api.requests")
+                .description("Latency of Lark open platform API calls")
+                .tag("api", api)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry))
+            .record(latencyNanos, TimeUnit.NANOSECONDS);
+
+        if (error != null) {
+            String exception = error.getClass().getSimpleName();
+            counters.computeIfAbsent("exception\t" + api + "\t" + exception, key -> Counter.builder("lark.api.exceptions")
+                    .tag("api", api)
+                    .tag("exception", exception)
+                    .register(registry))
+                .increment();
+        } else if (code != 0) {
+            counters.computeIfAbsent("error\t" + api + "\t" + code, key -> Counter.builder("lark.api.errors")
+                    .tag("api", api)
+                    .tag("code", String.valueOf(code))
+                    .register(registry))
+                .increment();
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package com.wayne.larkbot;
+
+import com.lark.oapi.core.utils.Jsons;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按优先级调度的出站发送：每个优先级一条队列，固定数量的发送线程按权重轮流从非空队列取消息，
+ * 受限流时紧急消息优先发出，批量消息仍按权重获得一部分发送机会而不会饿死。
+ * 排队发生在发送线程之外，发送线程数应与限流允许的并发相当，线程过多时消息会在限流器中等待而绕过优先级。
+ * 同一机器人的其他请求（如广播、卡片更新、上传）也应通过 broadcast 或 submit(Priority, Callable) 进入队列，
+ * 直接调用 LarkBot 的请求不经过队列，会与队列中的消息争抢限流额度。
+ */
+public class OutboundScheduler {
+    private static final Logger log = LoggerFactory.getLogger(OutboundScheduler.class);
+
+    /**
+     * 消息优先级
+     */
+    public enum Priority {
+        /** 紧急告警等需要尽快送达的消息 */
+        CRITICAL,
+        /** 普通消息 */
+        NORMAL,
+        /** 日报、广播等可以延后的批量消息 */
+        BULK
+    }
+
+    private final LarkBot bot;
+    private final int maxQueued;
+    private final Lane[] lanes = new Lane[Priority.values().length];
+    private final List<Thread> senders = new ArrayList<>();
+    private int queued; // 由this保护
+    private boolean closed; // 由this保护
+
+    private OutboundScheduler(Builder builder) {
+        this.bot = builder.bot;
+        this.maxQueued = builder.maxQueued;
+        for (Priority priority : Priority.values()) {
+            lanes[priority.ordinal()] = new Lane(builder.weights[priority.ordinal()]);
+        }
+        for (int i = 0; i < builder.concurrency; i++) {
+            Thread sender = LarkExecutors.daemonThreadFactory("lark-outbound-" + i).newThread(this::sendLoop);
+            senders.add(sender);
+            sender.start();
+        }
+    }
+
+    /**
+     * @param bot 用于发送的机器人
+     * @return 构建器
+     */
+    public static Builder newBuilder(LarkBot bot) {
+        return new Builder(bot);
+    }
+
+    /**
+     * 把消息放入对应优先级的队列
+     * @param priority 优先级
+     * @param receiveIdType 接收者ID类型 ('open_id' 或 'chat_id')
+     * @param receiveId 接收者的ID
+     * @param msgType 消息类型
+     * @param content 消息内容
+     * @return 发送结果的Future，队列已满时以RejectedExecutionException完成；出队前取消则不再发送
+     */
+    public CompletableFuture<SendResult> submit(Priority priority, String receiveIdType, String receiveId,
+                                                String msgType, String content) {
+        return submit(priority, receiveId,
+            () -> bot.sendMessageWithResult(receiveIdType, receiveId, msgType, content, null));
+    }
+
+    /**
+     * 把任意请求放入对应优先级的队列，由发送线程执行，用于消息发送以外同样占用限流额度的调用
+     * @param priority 优先级
+     * @param task 要执行的请求
+     * @return 请求结果的Future，队列已满时以RejectedExecutionException完成，请求抛出的异常同样记录在其中
+     */
+    public <T> CompletableFuture<T> submit(Priority priority, Callable<T> task) {
+        return submit(priority, "task", task);
+    }
+
+    /**
+     * 将同一条消息广播给多个接收者，每个接收者作为一条消息进入对应优先级的队列
+     * @param priority 优先级
+     * @param receiveIdType 接收者ID类型 ('open_id' 或 'chat_id')
+     * @param receiveIds 接收者ID列表
+     * @param msgType 消息类型
+     * @param content 已序列化的消息内容
+     * @return 广播结果的Future，队列放不下的接收者以RejectedExecutionException记为失败
+     */
+    public CompletableFuture<BroadcastReport> broadcast(Priority priority, String receiveIdType, List<String> receiveIds,
+                                                        String msgType, String content) {
+        long start = System.nanoTime();
+        List<Item<SendResult>> items = new ArrayList<>(receiveIds.size());
+        for (String receiveId : receiveIds) {
+            items.add(new Item<>(receiveId,
+                () -> bot.sendMessageWithResult(receiveIdType, receiveId, msgType, content, null)));
+        }
+        synchronized (this) {
+            ensureOpen();
+            for (Item<SendResult> item : items) {
+                enqueue(priority, item);
+            }
+        }
+        SendResult[] results = new SendResult[items.size()];
+        CompletableFuture<?>[] done = new CompletableFuture<?>[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            int index = i;
+            done[i] = items.get(i).result.handle((result, error) -> results[index] =
+                error == null ? result : SendResult.failed(receiveIds.get(index), LarkExecutors.unwrap(error)));
+        }
+        return CompletableFuture.allOf(done).thenApply(ignored -> new BroadcastReport(Arrays.asList(results),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+
+    /**
+     * 发送文本消息给特定聊天群组
+     * @param priority 优先级
+     * @param chatId 群组的chat_id
+     * @param text 文本消息
+     * @return 发送结果的Future
+     */
+    public CompletableFuture<SendResult> sendTextToChat(Priority priority, String chatId, String text) {
+        return submit(priority, "chat_id", chatId, "text", Jsons.DEFAULT.toJson(Collections.singletonMap("text", text)));
+    }
+
+    /**
+     * 发送文本消息给特定用户
+     * @param priority 优先级
+     * @param userOpenId 用户的open_id
+     * @param text 文本消息
+     * @return 发送结果的Future
+     */
+    public CompletableFuture<SendResult> sendTextToUser(Priority priority, String userOpenId, String text) {
+        return submit(priority, "open_id", userOpenId, "text", Jsons.DEFAULT.toJson(Collections.singletonMap("text", text)));
+    }
+
+    private <T> CompletableFuture<T> submit(Priority priority, String target, Callable<T> task) {
+        Item<T> item = new Item<>(target, task);
+        synchronized (this) {
+            ensureOpen();
+            enqueue(priority, item);
+        }
+        return item.result;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("OutboundScheduler is closed");
+        }
+    }
+
+    /**
+     * 放入队列，队列已满时以RejectedExecutionException完成，调用时需持有this
+     */
+    private void enqueue(Priority priority, Item<?> item) {
+        Lane lane = lanes[priority.ordinal()];
+        lane.submitted++;
+        if (lane.queue.size() >= maxQueued) {
+            lane.rejected++;
+            item.result.completeExceptionally(
+                new RejectedExecutionException(priority + " lane is full (" + maxQueued + " queued)"));
+            return;
+        }
+        lane.queue.addLast(item);
+        queued++;
+        notify();
+    }
+
+    /**
+     * @param priority 优先级
+     * @return 该优先级队列的统计快照
+     */
+    public synchronized LaneStats getStats(Priority priority) {
+        Lane lane = lanes[priority.ordinal()];
+        return new LaneStats(priority, lane.queue.size(), lane.submitted, lane.dispatched, lane.rejected,
+            lane.totalWaitNanos, lane.maxWaitNanos);
+    }
+
+    /**
+     * 停止接收新消息，发送线程发完队列中已有的消息后退出
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+    }
+
+    private void sendLoop() {
+        while (true) {
+            Item<?> item;
+            try {
+                item = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (item == null) {
+                return;
+            }
+            if (!item.run()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 平滑加权轮询：每次给所有非空队列加上各自的权重，取当前值最大的队列并减去非空队列的权重之和，
+     * 连续竞争时各队列的出队比例等于权重比例，且同一队列不会连续占用过长
+     * @return 下一条消息，关闭且队列为空时返回null
+     */
+    private synchronized Item<?> take() throws InterruptedException {
+        while (true) {
+            while (queued == 0) {
+                if (closed) {
+                    return null;
+                }
+                wait();
+            }
+            Lane selected = null;
+            int totalWeight = 0;
+            for (Lane lane : lanes) {
+                if (lane.queue.isEmpty()) {
+                    continue;
+                }
+                lane.current += lane.weight;
+                totalWeight += lane.weight;
+                if (selected == null || lane.current > selected.current) {
+                    selected = lane;
+                }
+            }
+            selected.current -= totalWeight;
+            Item<?> item = selected.queue.pollFirst();
+            queued--;
+            if (item.result.isDone()) {
+                // 已被调用方取消，取下一条
+                continue;
+            }
+            long waitNanos = System.nanoTime() - item.enqueuedAtNanos;
+            selected.dispatched++;
+            selected.totalWaitNanos += waitNanos;
+            selected.maxWaitNanos = Math.max(selected.maxWaitNanos, waitNanos);
+            return item;
+        }
+    }
+
+    private static final class Lane {
+        final int weight;
+        final ArrayDeque<Item<?>> queue = new ArrayDeque<>();
+        int current; // 平滑加权轮询的当前值
+        long submitted;
+        long dispatched;
+        long rejected;
+        long totalWaitNanos;
+        long maxWaitNanos;
+
+        Lane(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private static final class Item<T> {
+        final String target; // 用于日志的接收者ID
+        final Callable<T> task;
+        final long enqueuedAtNanos = System.nanoTime();
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Item(String target, Callable<T> task) {
+            this.target = target;
+            this.task = task;
+        }
+
+        /**
+         * 执行请求并完成结果，任何异常（包括Error）都记录在结果中，不会终止发送线程
+         * @return 发送线程被中断时返回false
+         */
+        boolean run() {
+            try {
+                result.complete(task.call());
+            } catch (InterruptedException e) {
+                result.completeExceptionally(e);
+                return false;
+            } catch (Throwable t) {
+                log.error("Failed to send scheduled message to {}", target, t);
+                result.completeExceptionally(t);
+            }
+            return true;
+        }
+    }
+
+    public static class Builder {
+        private final LarkBot bot;
+        private int concurrency = 4;
+        private int maxQueued = 10000;
+        private final int[] weights = {16, 4, 1};
+
+        private Builder(LarkBot bot) {
+            this.bot = bot;
+        }
+
+        /**
+         * @param concurrency 发送线程数，即同时进行中的请求数
+         */
+        public Builder concurrency(int concurrency) {
+            if (concurrency < 1) {
+                throw new IllegalArgumentException("concurrency must be at least 1");
+            }
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * @param maxQueued 每个优先级队列最多排队的消息数
+         */
+        public Builder maxQueued(int maxQueued) {
+            if (maxQueued < 1) {
+                throw new IllegalArgumentException("maxQueued must be at least 1");
+            }
+            this.maxQueued = maxQueued;
+            return this;
+        }
+
+        /**
+         * 各优先级的出队权重，队列都非空时出队比例等于权重比例，默认 16:4:1
+         */
+        public Builder weights(int critical, int normal, int bulk) {
+            if (critical < 1 || normal < 1 || bulk < 1) {
+                throw new IllegalArgumentException("weights must be at least 1");
+            }
+            weights[Priority.CRITICAL.ordinal()] = critical;
+            weights[Priority.NORMAL.ordinal()] = normal;
+            weights[Priority.BULK.ordinal()] = bulk;
+            return this;
+        }
+
+        public OutboundScheduler build() {
+            return new OutboundScheduler(this);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.wayne.larkbot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 持久化发件箱：消息先追加到内存映射的预写日志再异步投递，投递成功后确认。
+ * 进程重启后重放未确认的消息，重放时沿用写入时生成的uuid，由飞书在1小时内去重，
+ * 因此投递语义为至少一次；超过去重窗口才重放的消息可能重复。
+ * 写入只修改映射内存，刷盘由后台线程按固定间隔批量完成（组提交），入队不等待磁盘。
+ */
+public class Outbox {
+    private static final Logger log = LoggerFactory.getLogger(Outbox.class);
+
+    private final LarkBot bot;
+    private final OutboxLog wal;
+    private final long retryBaseMillis;
+    private final long retryMaxMillis;
+    private final Consumer<SendResult> onDropped;
+    private final BlockingQueue<OutboxLog.Record> queue = new LinkedBlockingQueue<>();
+    private final ScheduledExecutorService scheduler;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean closed;
+
+    private Outbox(Builder builder) throws IOException {
+        this.bot = builder.bot;
+        this.wal = new OutboxLog(builder.dir, builder.segmentSize);
+        this.retryBaseMillis = builder.retryBaseMillis;
+        this.retryMaxMillis = builder.retryMaxMillis;
+        this.onDropped = builder.onDropped;
+
+        List<OutboxLog.Record> replayed = wal.open();
+        if (!replayed.isEmpty()) {
+            log.info("Replaying {} undelivered outbox messages from {}", replayed.size(), builder.dir);
+        }
+        queue.addAll(replayed);
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(LarkExecutors.daemonThreadFactory("lark-outbox-sync"));
+        scheduler.scheduleWithFixedDelay(wal::sync, builder.syncIntervalMillis, builder.syncIntervalMillis, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < builder.deliveryThreads; i++) {
+            Thread worker = LarkExecutors.daemonThreadFactory("lark-outbox-" + i).newThread(this::deliverLoop);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * @param bot 用于投递的机器人
+     * @param dir 预写日志目录，同一目录同时只能被一个发件箱使用
+     * @return 构建器
+     */
+    public static Builder newBuilder(LarkBot bot, Path dir) {
+        return new Builder(bot, dir);
+    }
+
+    /**
+     * 写入日志后立即返回，消息由后台线程投递
+     * @param receiveIdType 接收者ID类型 ('open_id' 或 'chat_id')
+     * @param receiveId 接收者的ID
+     * @param msgType 消息类型
+     * @param content 消息内容
+     * @return 本条消息的uuid，重放时沿用
+     * @throws IOException 写入日志失败
+     */
+    public String enqueue(String receiveIdType, String receiveId, String msgType, String content) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Outbox is closed");
+        }
+        String uuid = UUID.randomUUID().toString();
+        queue.add(wal.append(uuid, receiveIdType, receiveId, msgType, content));
+        return uuid;
+    }
+
+    /**
+     * @return 已写入日志但尚未投递成功的消息数
+     */
+    public int getPendingCount() {
+        return wal.getPendingCount();
+    }
+
+    /**
+     * 立即把已写入的消息刷到磁盘，不等待下一次定时刷盘
+     */
+    public void sync() {
+        wal.sync();
+    }
+
+    /**
+     * 停止投递并刷盘，未投递的消息留在日志中，下次打开同一目录时重放
+     * @throws IOException 关闭日志失败
+     */
+    public void close() throws IOException {
+        closed = true;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        scheduler.shutdownNow();
+        wal.close();
+    }
+
+    private void deliverLoop() {
+        while (!closed) {
+            OutboxLog.Record record;
+            try {
+                record = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                deliver(record);
+            } catch (InterruptedException e) {
+                // 关闭时正在投递的消息保留在日志中
+                return;
+            } catch (Exception e) {
+                log.error("Failed to update outbox log for message {}", record.uuid, e);
+            }
+        }
+    }
+
+    private void deliver(OutboxLog.Record record) throws InterruptedException, IOException {
+        SendResult result = bot.sendMessageWithResult(record.receiveIdType, record.receiveId, record.msgType,
+            record.content, record.uuid);
+        if (result.isSuccess()) {
+            wal.ack(record);
+            return;
+        }
+        if (RetryPolicy.isRetryable(result)) {
+            // LarkBot内部的重试已用完，在发件箱层面以更长的退避继续重试
+            record.attempts++;
+            long cap = Math.min(retryMaxMillis, retryBaseMillis << Math.min(record.attempts - 1, 20));
+            long delay = ThreadLocalRandom.current().nextLong(cap / 2, cap + 1);
+            if (closed) {
+                return;
+            }
+            scheduler.schedule(() -> queue.add(record), delay, TimeUnit.MILLISECONDS);
+            return;
+        }
+        log.warn("Dropping outbox message {} to {}: code:{}, msg:{}, reqId:{}",
+            record.uuid, record.receiveId, result.getCode(), result.getMsg(), result.getRequestId());
+        wal.ack(record);
+        if (onDropped != null) {
+            onDropped.accept(result);
+        }
+    }
+
+    public static class Builder {
+        private final LarkBot bot;
+        private final Path dir;
+        private int segmentSize = 16 * 1024 * 1024;
+        private long syncIntervalMillis = 10;
+        private int deliveryThreads = 4;
+        private long retryBaseMillis = 1000;
+        private long retryMaxMillis = 60000;
+        private Consumer<SendResult> onDropped;
+
+        private Builder(LarkBot bot, Path dir) {
+            this.bot = bot;
+            this.dir = dir;
+        }
+
+        /**
+         * @param bytes 单个段文件的大小，单条消息不能超过该大小
+         */
+        public Builder segmentSize(int bytes) {
+            if (bytes < 64 * 1024) {
+                throw new IllegalArgumentException("segmentSize must be at least 64KB");
+            }
+            this.segmentSize = bytes;
+            return this;
+        }
+
+        /**
+         * @param interval 批量刷盘的间隔，越短则操作系统崩溃时可能丢失的消息越少
+         * @param unit 间隔单位
+         */
+        public Builder syncInterval(long interval, TimeUnit unit) {
+            this.syncIntervalMillis = Math.max(1, unit.toMillis(interval));
+            return this;
+        }
+
+        /**
+         * @param threads 并行投递的线程数
+         */
+        public Builder deliveryThreads(int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("deliveryThreads must be at least 1");
+            }
+            this.deliveryThreads = threads;
+            return this;
+        }
+
+        /**
+         * @param baseMillis 暂时性失败后第一次重新投递的等待时间，之后每次翻倍
+         * @param maxMillis 重新投递等待时间的上限
+         */
+        public Builder retryBackoff(long baseMillis, long maxMillis) {
+            this.retryBaseMillis = baseMillis;
+            this.retryMaxMillis = maxMillis;
+            return this;
+        }
+
+        /**
+         * @param onDropped 因不可重试的错误（如接收者不存在）被丢弃的消息回调
+         */
+        public Builder onDropped(Consumer<SendResult> onDropped) {
+            this.onDropped = onDropped;
+            return this;
+        }
+
+        /**
+         * 打开日志、重放未投递的消息并启动投递线程
+         * @return 发件箱
+         * @throws IOException 打开日志失败
+         */
+        public Outbox build() throws IOException {
+            return new Outbox(this);
+        }
+    }
+}
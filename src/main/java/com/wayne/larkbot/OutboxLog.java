@@ -0,0 +1,454 @@
+package com.wayne.larkbot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 发件箱的预写日志：由若干预分配、内存映射的段文件组成，只追加写入。
+ * 每条记录为 "长度(4) + CRC32(4) + 记录体"，先写记录体与校验和、最后写长度，
+ * 进程中途退出时不会留下可被识别为完整的半条记录。段文件写满后滚动到新段；
+ * 最旧的段中记录全部确认后删除，仅剩少量未确认记录时把它们搬到当前段后删除；删除的段立即解除映射，
+ * 不等待GC回收映射缓冲区。
+ */
+class OutboxLog {
+    private static final Logger log = LoggerFactory.getLogger(OutboxLog.class);
+    private static final byte TYPE_ENQUEUE = 1;
+    private static final byte TYPE_ACK = 2;
+    private static final int HEADER_SIZE = 8;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    /** 最旧段中未确认记录的占比不超过该值时搬迁后删除 */
+    private static final int RELOCATE_RATIO = 10;
+
+    private final Path dir;
+    private final int segmentSize;
+    private final Deque<Segment> segments = new ArrayDeque<>(); // 由this保护
+    private final Map<Long, Record> pending = new LinkedHashMap<>(); // 由this保护
+    private final CRC32 crc = new CRC32(); // 由this保护
+    private final Object syncLock = new Object(); // 保证同时只有一个线程在锁外刷盘
+    private final List<Segment> retired = new ArrayList<>(); // 已删除但正在刷盘、刷盘后再解除映射的段，由this保护
+    private Segment forcing; // 正在锁外刷盘的段，由this保护
+    private boolean closed; // 由this保护
+    private Segment active; // 由this保护
+    private long nextSeq = 1; // 由this保护
+    private long nextSegmentId = 1; // 由this保护
+    private boolean dirty; // 由this保护
+    private boolean compacting; // 由this保护
+
+    /**
+     * @param dir 段文件所在目录
+     * @param segmentSize 单个段文件的字节数
+     */
+    OutboxLog(Path dir, int segmentSize) {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * 打开日志并重放已有段文件
+     * @return 尚未确认的记录，按写入顺序
+     * @throws IOException 读取段文件失败
+     */
+    synchronized List<Record> open() throws IOException {
+        Files.createDirectories(dir);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        // 段文件名为定长的递增编号，按名字排序即为写入顺序
+        files.sort(null);
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            nextSegmentId = Math.max(nextSegmentId, id + 1);
+            Segment segment = Segment.map(file, segmentSize);
+            segments.addLast(segment);
+            replay(segment);
+        }
+        for (Record record : pending.values()) {
+            record.segment.live++;
+        }
+        active = segments.peekLast();
+        if (active == null) {
+            active = newSegment();
+        }
+        compact();
+        return new ArrayList<>(pending.values());
+    }
+
+    /**
+     * 追加一条待发送消息
+     * @return 写入的记录
+     */
+    synchronized Record append(String uuid, String receiveIdType, String receiveId, String msgType, String content)
+            throws IOException {
+        ensureOpen();
+        Record record = new Record(nextSeq++, uuid, receiveIdType, receiveId, msgType, content);
+        write(record);
+        pending.put(record.seq, record);
+        return record;
+    }
+
+    /**
+     * 确认一条记录已投递，所在段中的记录全部确认后可被删除
+     */
+    synchronized void ack(Record record) throws IOException {
+        ensureOpen();
+        if (pending.remove(record.seq) == null) {
+            return;
+        }
+        record.segment.live--;
+        ByteBuffer body = ByteBuffer.allocate(9);
+        body.put(TYPE_ACK).putLong(record.seq);
+        writeBody(body.array(), 9);
+        if (record.segment != active && record.segment == segments.peekFirst()) {
+            compact();
+        }
+    }
+
+    /**
+     * 把当前段的写入刷到磁盘；映射缓冲区的写入在进程退出后仍保留在页缓存中，
+     * 刷盘只用于防止操作系统崩溃或断电时丢失
+     */
+    void sync() {
+        synchronized (syncLock) {
+            Segment segment;
+            synchronized (this) {
+                if (!dirty || closed) {
+                    return;
+                }
+                dirty = false;
+                segment = active;
+                forcing = segment;
+            }
+            try {
+                segment.buffer.force();
+            } finally {
+                synchronized (this) {
+                    forcing = null;
+                    for (Segment released : retired) {
+                        released.unmap();
+                    }
+                    retired.clear();
+                }
+            }
+        }
+    }
+
+    synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Segment segment : segments) {
+            segment.buffer.force();
+            release(segment);
+        }
+        segments.clear();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Outbox log is closed");
+        }
+    }
+
+    /**
+     * 解除不再使用的段的映射；正在锁外刷盘的段推迟到刷盘结束后解除
+     */
+    private void release(Segment segment) {
+        if (segment == forcing) {
+            retired.add(segment);
+        } else {
+            segment.unmap();
+        }
+    }
+
+    private void replay(Segment segment) throws IOException {
+        ByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + HEADER_SIZE <= segmentSize) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_SIZE + length > segmentSize) {
+                break;
+            }
+            byte[] body = new byte[length];
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(position + HEADER_SIZE);
+            slice.get(body);
+            crc.reset();
+            crc.update(body, 0, length);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                log.warn("Corrupted outbox record in {} at offset {}, ignoring the rest of the segment",
+                    segment.path, position);
+                break;
+            }
+            apply(segment, ByteBuffer.wrap(body));
+            position += HEADER_SIZE + length;
+        }
+        segment.position = position;
+        // 清掉末尾可能残留的半条记录的长度位，之后的追加从这里开始
+        if (position + 4 <= segmentSize) {
+            buffer.putInt(position, 0);
+        }
+    }
+
+    private void apply(Segment segment, ByteBuffer body) {
+        byte type = body.get();
+        long seq = body.getLong();
+        nextSeq = Math.max(nextSeq, seq + 1);
+        if (type == TYPE_ACK) {
+            pending.remove(seq);
+            return;
+        }
+        Record record = new Record(seq, readString(body), readString(body), readString(body),
+            readString(body), readString(body));
+        record.segment = segment;
+        segment.enqueued++;
+        // 搬迁过的记录会出现两次，以较新的位置为准
+        pending.put(seq, record);
+    }
+
+    private void write(Record record) throws IOException {
+        byte[][] fields = {
+            utf8(record.uuid), utf8(record.receiveIdType), utf8(record.receiveId), utf8(record.msgType), utf8(record.content)
+        };
+        int length = 9;
+        for (byte[] field : fields) {
+            length += 4 + field.length;
+        }
+        ByteBuffer body = ByteBuffer.allocate(length);
+        body.put(TYPE_ENQUEUE).putLong(record.seq);
+        for (byte[] field : fields) {
+            body.putInt(field.length).put(field);
+        }
+        writeBody(body.array(), length);
+        if (record.segment != null) {
+            record.segment.live--;
+        }
+        record.segment = active;
+        active.live++;
+        active.enqueued++;
+    }
+
+    private void writeBody(byte[] body, int length) throws IOException {
+        if (HEADER_SIZE + length > segmentSize) {
+            throw new IllegalArgumentException("Outbox record of " + length + " bytes exceeds segment size " + segmentSize);
+        }
+        // roll中的整理可能把最旧段的记录搬进新段，新段的剩余空间需要重新检查
+        while (active.position + HEADER_SIZE + length > segmentSize) {
+            roll();
+        }
+        crc.reset();
+        crc.update(body, 0, length);
+        MappedByteBuffer buffer = active.buffer;
+        int position = active.position;
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(position + HEADER_SIZE);
+        slice.put(body, 0, length);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        int next = position + HEADER_SIZE + length;
+        if (next + 4 <= segmentSize) {
+            // 下一条记录的长度位可能残留着中断写入的数据，先清零作为日志结尾
+            buffer.putInt(next, 0);
+        }
+        // 长度最后写入，作为记录完整的标志
+        buffer.putInt(position, length);
+        active.position = next;
+        dirty = true;
+    }
+
+    private void roll() throws IOException {
+        active.buffer.force();
+        active = newSegment();
+        compact();
+    }
+
+    private Segment newSegment() throws IOException {
+        Path file = dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSegmentId++, SEGMENT_SUFFIX));
+        Segment segment = Segment.map(file, segmentSize);
+        segments.addLast(segment);
+        return segment;
+    }
+
+    /**
+     * 从最旧的段开始删除：段中记录全部确认时直接删除；只剩少量未确认记录时先搬到当前段。
+     * 只按顺序删除最旧的段，保证确认记录不会先于它确认的消息记录被删除
+     */
+    private void compact() throws IOException {
+        if (compacting) {
+            return;
+        }
+        compacting = true;
+        try {
+            while (segments.size() > 1) {
+                Segment oldest = segments.peekFirst();
+                if (oldest.live > 0) {
+                    if (oldest.live * RELOCATE_RATIO > oldest.enqueued) {
+                        return;
+                    }
+                    relocate(oldest);
+                }
+                segments.pollFirst();
+                release(oldest);
+                try {
+                    Files.deleteIfExists(oldest.path);
+                } catch (IOException e) {
+                    log.warn("Failed to delete outbox segment {}", oldest.path, e);
+                }
+            }
+        } finally {
+            compacting = false;
+        }
+    }
+
+    private void relocate(Segment segment) throws IOException {
+        Collection<Record> records = new ArrayList<>(pending.values());
+        for (Record record : records) {
+            if (record.segment == segment) {
+                write(record);
+            }
+        }
+        // 搬迁后的记录需要先落盘，再删除旧段
+        active.buffer.force();
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer body) {
+        byte[] bytes = new byte[body.getInt()];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 一条待投递的消息
+     */
+    static final class Record {
+        final long seq;
+        final String uuid;
+        final String receiveIdType;
+        final String receiveId;
+        final String msgType;
+        final String content;
+        Segment segment; // 由OutboxLog保护
+        int attempts; // 仅由投递线程访问
+
+        Record(long seq, String uuid, String receiveIdType, String receiveId, String msgType, String content) {
+            this.seq = seq;
+            this.uuid = uuid;
+            this.receiveIdType = receiveIdType;
+            this.receiveId = receiveId;
+            this.msgType = msgType;
+            this.content = content;
+        }
+    }
+
+    static final class Segment {
+        private static final Unmapper UNMAPPER = Unmapper.create();
+
+        final Path path;
+        final MappedByteBuffer buffer;
+        int position; // 下一条记录的写入位置
+        int live; // 位于本段的未确认消息记录数
+        int enqueued; // 写入本段的消息记录数
+
+        private Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        /**
+         * 映射段文件，文件不足指定大小时以0填充；映射在文件关闭后仍然有效
+         */
+        static Segment map(Path path, int size) throws IOException {
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                if (file.length() < size) {
+                    file.setLength(size);
+                }
+                return new Segment(path, file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+            }
+        }
+
+        /**
+         * 立即释放映射，之后不能再访问buffer；不支持时留给GC回收
+         */
+        void unmap() {
+            UNMAPPER.unmap(buffer);
+        }
+    }
+
+    /**
+     * 通过JDK内部接口释放映射缓冲区：Java 9+ 使用 Unsafe.invokeCleaner，Java 8 使用缓冲区的cleaner
+     */
+    private static final class Unmapper {
+        private final Object unsafe;
+        private final Method invokeCleaner;
+
+        private Unmapper(Object unsafe, Method invokeCleaner) {
+            this.unsafe = unsafe;
+            this.invokeCleaner = invokeCleaner;
+        }
+
+        static Unmapper create() {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                return new Unmapper(theUnsafe.get(null), invokeCleaner);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return new Unmapper(null, null);
+            }
+        }
+
+        void unmap(MappedByteBuffer buffer) {
+            try {
+                if (invokeCleaner != null) {
+                    invokeCleaner.invoke(unsafe, buffer);
+                    return;
+                }
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                log.debug("Unable to unmap outbox segment, leaving it to GC", e);
+            }
+        }
+    }
+}
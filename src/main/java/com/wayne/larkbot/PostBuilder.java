@@ -0,0 +1,137 @@
+package com.wayne.larkbot;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 类型化的富文本（post）消息构造器，直接把元素写成JSON。
+ * 内部的输出缓冲区会在多次 toJson() 之间复用；调用 clear() 后可继续构造下一条消息。
+ * 非线程安全。
+ */
+public class PostBuilder {
+    private String title;
+    private final List<List<PostElement>> lines = new ArrayList<>();
+    private final JsonBuffer buffer = new JsonBuffer(256);
+
+    public PostBuilder(String title) {
+        this.title = title;
+    }
+
+    public PostBuilder title(String title) {
+        this.title = title;
+        return this;
+    }
+
+    /**
+     * 在当前行末尾追加元素
+     * @param element 元素
+     */
+    public PostBuilder add(PostElement element) {
+        if (lines.isEmpty()) {
+            lines.add(new ArrayList<>());
+        }
+        lines.get(lines.size() - 1).add(element);
+        return this;
+    }
+
+    /**
+     * 在当前行末尾追加文本
+     * @param text 文本
+     * @param styles 样式，取值见 PostContent.listTextStyles()
+     */
+    public PostBuilder text(String text, String... styles) {
+        return add(PostElement.text(text, Arrays.asList(styles), false));
+    }
+
+    /**
+     * 在当前行末尾追加超链接
+     * @param text 链接文字
+     * @param href 链接地址
+     */
+    public PostBuilder link(String text, String href) {
+        return add(PostElement.link(text, href, null));
+    }
+
+    /**
+     * 在当前行末尾追加@提醒
+     * @param userId 用户的open_id，"all"表示所有人
+     */
+    public PostBuilder at(String userId) {
+        return add(PostElement.at(userId, null));
+    }
+
+    /**
+     * 在当前行末尾追加图片
+     * @param imageKey 图片的key
+     */
+    public PostBuilder image(String imageKey) {
+        return add(PostElement.image(imageKey));
+    }
+
+    /**
+     * 开始新的一行
+     */
+    public PostBuilder newLine() {
+        lines.add(new ArrayList<>());
+        return this;
+    }
+
+    /**
+     * 清空所有行，保留标题与输出缓冲区以便复用
+     */
+    public PostBuilder clear() {
+        lines.clear();
+        return this;
+    }
+
+    /**
+     * @return 写出的JSON大致字符数
+     */
+    public int estimateSize() {
+        int size = 40 + (title != null ? title.length() : 0);
+        for (List<PostElement> line : lines) {
+            size += 2 + line.size();
+            for (PostElement element : line) {
+                size += element.estimateSize();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 把消息内容写入JsonWriter
+     * @param writer JsonWriter
+     */
+    public void writeTo(JsonWriter writer) throws IOException {
+        writer.beginObject().name("zh_cn").beginObject();
+        if (title != null) {
+            writer.name("title").value(title);
+        }
+        writer.name("content").beginArray();
+        for (List<PostElement> line : lines) {
+            writer.beginArray();
+            for (PostElement element : line) {
+                element.write(writer);
+            }
+            writer.endArray();
+        }
+        writer.endArray().endObject().endObject();
+    }
+
+    /**
+     * @return 可直接作为post消息content的JSON字符串
+     */
+    public String toJson() {
+        try {
+            writeTo(buffer.reset(estimateSize()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toString();
+    }
+}
@@ -17,6 +17,16 @@ public class PostContent {
         return content;
     }
 
+    /**
+     * 流式写出消息内容的JSON，每次调用使用独立的缓冲区，同一实例可被多个线程同时发送
+     * @return 可直接作为post消息content的JSON字符串
+     */
+    public String toJson() {
+        JsonBuffer buffer = new JsonBuffer(256);
+        JsonBuffer.writeValue(buffer.reset(256), content);
+        return buffer.toString();
+    }
+
     public void setTitle(String title) {
         Map<String, Object> zhCnContent = content.get("zh_cn");
         if (zhCnContent != null) {
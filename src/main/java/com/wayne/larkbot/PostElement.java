@@ -0,0 +1,183 @@
+package com.wayne.larkbot;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 富文本（post）消息中的一个元素，直接写出JSON而不经过Map
+ */
+public abstract class PostElement {
+
+    PostElement() {
+    }
+
+    /**
+     * 文本元素
+     * @param text 文本
+     * @param styles 样式，取值见 PostContent.listTextStyles()，可为null
+     * @param unescape 是否解析文本中的转义字符
+     */
+    public static PostElement text(String text, List<String> styles, boolean unescape) {
+        return new Text(text, styles, unescape);
+    }
+
+    /**
+     * 超链接元素
+     * @param text 链接文字
+     * @param href 链接地址
+     * @param styles 样式，可为null
+     */
+    public static PostElement link(String text, String href, List<String> styles) {
+        return new Link(text, href, styles);
+    }
+
+    /**
+     * @提醒元素
+     * @param userId 用户的open_id，"all"表示所有人
+     * @param styles 样式，可为null
+     */
+    public static PostElement at(String userId, List<String> styles) {
+        return new At(userId, styles);
+    }
+
+    /**
+     * 图片元素
+     * @param imageKey 图片的key
+     */
+    public static PostElement image(String imageKey) {
+        return new Image(imageKey);
+    }
+
+    abstract void write(JsonWriter writer) throws IOException;
+
+    /**
+     * @return 写出的JSON大致字符数，用于预分配缓冲区
+     */
+    abstract int estimateSize();
+
+    static void writeStyles(JsonWriter writer, List<String> styles) throws IOException {
+        writer.name("style").beginArray();
+        for (String style : styles) {
+            writer.value(style);
+        }
+        writer.endArray();
+    }
+
+    static int estimateStyles(List<String> styles) {
+        int size = 12;
+        for (String style : styles) {
+            size += style.length() + 3;
+        }
+        return size;
+    }
+
+    private static List<String> stylesOrEmpty(List<String> styles) {
+        return styles != null ? styles : Collections.emptyList();
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 4;
+    }
+
+    private static final class Text extends PostElement {
+        private final String text;
+        private final List<String> styles;
+        private final boolean unescape;
+
+        Text(String text, List<String> styles, boolean unescape) {
+            this.text = text;
+            this.styles = stylesOrEmpty(styles);
+            this.unescape = unescape;
+        }
+
+        @Override
+        void write(JsonWriter writer) throws IOException {
+            writer.beginObject()
+                .name("tag").value("text")
+                .name("text").value(text);
+            writeStyles(writer, styles);
+            writer.name("unescape").value(unescape)
+                .endObject();
+        }
+
+        @Override
+        int estimateSize() {
+            return 48 + length(text) + estimateStyles(styles);
+        }
+    }
+
+    private static final class Link extends PostElement {
+        private final String text;
+        private final String href;
+        private final List<String> styles;
+
+        Link(String text, String href, List<String> styles) {
+            this.text = text;
+            this.href = href;
+            this.styles = stylesOrEmpty(styles);
+        }
+
+        @Override
+        void write(JsonWriter writer) throws IOException {
+            writer.beginObject()
+                .name("tag").value("a")
+                .name("text").value(text)
+                .name("href").value(href);
+            writeStyles(writer, styles);
+            writer.endObject();
+        }
+
+        @Override
+        int estimateSize() {
+            return 36 + length(text) + length(href) + estimateStyles(styles);
+        }
+    }
+
+    private static final class At extends PostElement {
+        private final String userId;
+        private final List<String> styles;
+
+        At(String userId, List<String> styles) {
+            this.userId = userId;
+            this.styles = stylesOrEmpty(styles);
+        }
+
+        @Override
+        void write(JsonWriter writer) throws IOException {
+            writer.beginObject()
+                .name("tag").value("at")
+                .name("user_id").value(userId);
+            writeStyles(writer, styles);
+            writer.endObject();
+        }
+
+        @Override
+        int estimateSize() {
+            return 28 + length(userId) + estimateStyles(styles);
+        }
+    }
+
+    private static final class Image extends PostElement {
+        private final String imageKey;
+
+        Image(String imageKey) {
+            this.imageKey = imageKey;
+        }
+
+        @Override
+        void write(JsonWriter writer) throws IOException {
+            writer.beginObject()
+                .name("tag").value("img")
+                .name("image_key").value(imageKey)
+                .endObject();
+        }
+
+        @Override
+        int estimateSize() {
+            return 30 + length(imageKey);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.wayne.larkbot;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 发送消息的客户端限流器：应用级全局令牌桶 + 每个群、每个用户各自的令牌桶。
+ * 接收者的令牌桶保存在有界的LRU表中，超出容量时淘汰最久未使用的接收者。
+ * 默认值参考飞书发送消息接口的频控：应用 50 QPS，同一用户或群 5 QPS。
+ */
+public class RateLimiter {
+    public static final double DEFAULT_APP_QPS = 50;
+    public static final double DEFAULT_CHAT_QPS = 5;
+    public static final double DEFAULT_USER_QPS = 5;
+    public static final int DEFAULT_MAX_RECEIVERS = 10000;
+    private static final long RECOVERY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final double chatQps;
+    private final double userQps;
+    private final TokenBucket appBucket;
+    private final Map<String, TokenBucket> receiverBuckets;
+
+    public RateLimiter() {
+        this(DEFAULT_APP_QPS, DEFAULT_CHAT_QPS, DEFAULT_USER_QPS, DEFAULT_MAX_RECEIVERS);
+    }
+
+    /**
+     * @param appQps 应用级每秒请求数
+     * @param chatQps 单个群每秒请求数
+     * @param userQps 单个用户每秒请求数
+     * @param maxReceivers 最多跟踪的接收者数量
+     */
+    public RateLimiter(double appQps, double chatQps, double userQps, int maxReceivers) {
+        this.chatQps = chatQps;
+        this.userQps = userQps;
+        this.appBucket = new TokenBucket(appQps, Math.max(1, appQps), RECOVERY_NANOS);
+        this.receiverBuckets = new LinkedHashMap<String, TokenBucket>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TokenBucket> eldest) {
+                return size() > maxReceivers;
+            }
+        };
+    }
+
+    /**
+     * 阻塞直到应用和接收者的令牌桶都允许发送。
+     * 先等待接收者的令牌再预约应用令牌，应用令牌对应的正是实际发出的时刻，被单个接收者延后的消息不会在发出时叠加到新的应用令牌之上
+     * @param receiveIdType 接收者ID类型 ('open_id' 或 'chat_id')
+     * @param receiveId 接收者的ID
+     * @throws InterruptedException 等待时被中断
+     */
+    public void acquire(String receiveIdType, String receiveId) throws InterruptedException {
+        sleep(receiverBucket(receiveIdType, receiveId).reserve());
+        sleep(appBucket.reserve());
+    }
+
+    /**
+     * 服务端返回限流错误码时调用，降低对应令牌桶的速率
+     * @param receiveIdType 接收者ID类型
+     * @param receiveId 接收者的ID
+     * @param code 飞书错误码
+     */
+    public void onThrottled(String receiveIdType, String receiveId, int code) {
+        if (code == LarkErrorCodes.APP_RATE_LIMITED) {
+            appBucket.onThrottled();
+        } else {
+            receiverBucket(receiveIdType, receiveId).onThrottled();
+        }
+    }
+
+    /**
+     * @return 当前应用级的每秒请求数
+     */
+    public double getAppRate() {
+        return appBucket.currentRate();
+    }
+
+    private static void sleep(long waitNanos) throws InterruptedException {
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private TokenBucket receiverBucket(String receiveIdType, String receiveId) {
+        String key = receiveIdType + ":" + receiveId;
+        synchronized (receiverBuckets) {
+            TokenBucket bucket = receiverBuckets.get(key);
+            if (bucket == null) {
+                double qps = "chat_id".equals(receiveIdType) ? chatQps : userQps;
+                bucket = new TokenBucket(qps, 1, RECOVERY_NANOS);
+                receiverBuckets.put(key, bucket);
+            }
+            return bucket;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.wayne.larkbot;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 消息发送的重试策略：指数退避 + 全抖动，并用重试预算限制重试占总请求的比例，
+ * 避免服务端故障时重试流量把问题放大。同一次逻辑发送的所有尝试共用一个uuid，由服务端去重。
+ */
+public class RetryPolicy {
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final double budgetRatio;
+    private final double budgetCapacity;
+    private double budgetTokens;
+
+    private RetryPolicy(Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.baseDelayMillis = builder.baseDelayMillis;
+        this.maxDelayMillis = builder.maxDelayMillis;
+        this.budgetRatio = builder.budgetRatio;
+        this.budgetCapacity = builder.budgetCapacity;
+        this.budgetTokens = builder.budgetCapacity;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * @return 默认策略：最多3次尝试，200ms起步退避，重试不超过请求量的20%
+     */
+    public static RetryPolicy defaults() {
+        return newBuilder().build();
+    }
+
+    /**
+     * @return 不重试的策略
+     */
+    public static RetryPolicy none() {
+        return newBuilder().maxAttempts(1).build();
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * 每次逻辑发送开始时调用，向重试预算存入令牌
+     */
+    synchronized void onRequest() {
+        budgetTokens = Math.min(budgetCapacity, budgetTokens + budgetRatio);
+    }
+
+    /**
+     * 判断一次失败的尝试是否应当重试，允许时会消耗一个重试预算
+     * @param result 本次尝试的结果
+     * @param attempt 已进行的尝试次数，从1开始
+     * @return 是否重试
+     */
+    boolean shouldRetry(SendResult result, int attempt) {
+        if (attempt >= maxAttempts || !isRetryable(result)) {
+            return false;
+        }
+        synchronized (this) {
+            if (budgetTokens < 1) {
+                return false;
+            }
+            budgetTokens -= 1;
+            return true;
+        }
+    }
+
+    /**
+     * @param attempt 已进行的尝试次数，从1开始
+     * @return 下一次尝试前的等待毫秒数
+     */
+    long backoffMillis(int attempt) {
+        long cap = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /**
+     * @param result 发送结果
+     * @return 失败是否为暂时性的：网络异常、超时或限流
+     */
+    static boolean isRetryable(SendResult result) {
+        Throwable error = result.getError();
+        if (error != null) {
+            return error instanceof IOException || error instanceof TimeoutException;
+        }
+        return LarkErrorCodes.isRetryable(result.getCode());
+    }
+
+    public static class Builder {
+        private int maxAttempts = 3;
+        private long baseDelayMillis = 200;
+        private long maxDelayMillis = 5000;
+        private double budgetRatio = 0.2;
+        private double budgetCapacity = 10;
+
+        /**
+         * @param maxAttempts 单次逻辑发送的最大尝试次数（含第一次）
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be at least 1");
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * @param baseDelayMillis 第一次重试的最大退避时间，之后每次翻倍
+         * @param maxDelayMillis 退避时间上限
+         */
+        public Builder backoff(long baseDelayMillis, long maxDelayMillis) {
+            this.baseDelayMillis = baseDelayMillis;
+            this.maxDelayMillis = maxDelayMillis;
+            return this;
+        }
+
+        /**
+         * @param ratio 每次逻辑发送存入的重试令牌数，即重试量占请求量的比例上限
+         * @param capacity 预算最多积攒的令牌数，也决定了低流量时可连续重试的次数
+         */
+        public Builder budget(double ratio, double capacity) {
+            this.budgetRatio = ratio;
+            this.budgetCapacity = capacity;
+            return this;
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.wayne.larkbot;
+
+import com.lark.oapi.service.im.v1.model.CreateMessageRespBody;
+
+/**
+ * 单次消息发送的结果
+ */
+public class SendResult {
+    private final String receiveId;
+    private final CreateMessageRespBody data;
+    private final int code;
+    private final String msg;
+    private final String requestId;
+    private final Throwable error;
+    private final boolean suppressed;
+
+    SendResult(String receiveId, CreateMessageRespBody data, int code, String msg, String requestId, Throwable error) {
+        this(receiveId, data, code, msg, requestId, error, false);
+    }
+
+    private SendResult(String receiveId, CreateMessageRespBody data, int code, String msg, String requestId,
+                       Throwable error, boolean suppressed) {
+        this.receiveId = receiveId;
+        this.data = data;
+        this.code = code;
+        this.msg = msg;
+        this.requestId = requestId;
+        this.error = error;
+        this.suppressed = suppressed;
+    }
+
+    static SendResult failed(String receiveId, Throwable error) {
+        return new SendResult(receiveId, null, -1, error.getMessage(), null, error);
+    }
+
+    static SendResult suppressed(String receiveId) {
+        return new SendResult(receiveId, null, 0, "suppressed duplicate", null, null, true);
+    }
+
+    /**
+     * @return 是否发送成功，被过滤的重复消息视为成功
+     */
+    public boolean isSuccess() {
+        return error == null && code == 0;
+    }
+
+    /**
+     * @return 是否因窗口内已发送过相同消息而未发送，此时没有消息ID
+     */
+    public boolean isSuppressed() {
+        return suppressed;
+    }
+
+    public String getReceiveId() {
+        return receiveId;
+    }
+
+    /**
+     * @return 成功时的消息ID，失败时为null
+     */
+    public String getMessageId() {
+        return data != null ? data.getMessageId() : null;
+    }
+
+    /**
+     * @return 服务端返回的原始数据，失败时为null
+     */
+    public CreateMessageRespBody getData() {
+        return data;
+    }
+
+    /**
+     * @return 飞书错误码，0表示成功，-1表示请求未得到服务端响应
+     */
+    public int getCode() {
+        return code;
+    }
+
+    public String getMsg() {
+        return msg;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * @return 发送过程中抛出的异常，没有时为null
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SendResult{receiveId=%s, messageId=%s, code=%d, msg=%s, reqId=%s}",
+            receiveId, getMessageId(), code, msg, requestId);
+    }
+}
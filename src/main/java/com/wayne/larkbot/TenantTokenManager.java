@@ -0,0 +1,413 @@
+package com.wayne.larkbot;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.lark.oapi.core.request.RequestOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 租户访问凭证（tenant_access_token）管理：在过期前由后台线程提前刷新，发送消息时直接使用内存中的凭证，
+ * 不会因获取凭证而阻塞。同一JVM内同一appId只有一个实例，由所有机器人共用；
+ * 可选地通过带文件锁的缓存文件在同一台机器的多个进程之间共享凭证，只有一个进程实际请求新凭证。
+ * 飞书在凭证剩余有效期不足30分钟时才会签发新凭证，提前刷新的时间应小于30分钟。
+ */
+public class TenantTokenManager {
+    private static final Logger log = LoggerFactory.getLogger(TenantTokenManager.class);
+    private static final String TOKEN_PATH = "/open-apis/auth/v3/tenant_access_token/internal";
+    private static final ConcurrentMap<String, TenantTokenManager> SHARED = new ConcurrentHashMap<>();
+    /** 凭证剩余有效期不足该值时视为不可用，同步获取新凭证 */
+    private static final long MIN_VALIDITY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long RETRY_BASE_MILLIS = 1000;
+    private static final long RETRY_MAX_MILLIS = 60000;
+
+    private final String appId;
+    private final String appSecret;
+    private final String baseUrl;
+    private final long refreshAheadMillis;
+    private final Path cacheFile;
+    private final ScheduledExecutorService refresher;
+    private volatile Token current;
+    private volatile LarkMetrics metrics = LarkMetrics.NOOP; // 获取凭证请求的指标
+    private int failures; // 由this保护
+    private ScheduledFuture<?> nextRefresh; // 由this保护
+
+    private TenantTokenManager(Builder builder) {
+        this.appId = builder.appId;
+        this.appSecret = builder.appSecret;
+        this.baseUrl = builder.baseUrl;
+        this.refreshAheadMillis = builder.refreshAheadMillis;
+        this.cacheFile = builder.cacheFile;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(LarkExecutors.daemonThreadFactory("lark-token-" + appId));
+    }
+
+    /**
+     * @param appId 应用ID
+     * @param appSecret 应用密钥
+     * @return 构建器
+     */
+    public static Builder newBuilder(String appId, String appSecret) {
+        return new Builder(appId, appSecret);
+    }
+
+    /**
+     * @return 当前有效的凭证；只有首次使用前后台获取尚未完成或连续刷新失败时才会同步请求
+     * @throws Exception 获取凭证失败，飞书返回错误码时为 LarkApiException
+     */
+    public String getToken() throws Exception {
+        Token token = current;
+        if (token != null && token.isValid(System.currentTimeMillis())) {
+            return token.value;
+        }
+        return refresh(false).value;
+    }
+
+    /**
+     * 立即获取新凭证，用于服务端返回凭证无效时；后续请求使用新凭证。
+     * 同一凭证失效引起的多次调用只刷新一次，刷新执行前凭证已被替换时跳过
+     */
+    public void invalidate() {
+        Token rejected = current;
+        try {
+            refresher.execute(() -> {
+                if (current == rejected) {
+                    refreshQuietly(true);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 已关闭，不再刷新；不能让凭证无效的普通响应在发送路径上变成异常
+            log.debug("Tenant token manager for app {} is closed, skipping refresh", appId);
+        }
+    }
+
+    /**
+     * 设置获取凭证请求的指标记录方式，接口名为 LarkMetrics.TENANT_ACCESS_TOKEN。
+     * 同一appId的实例由多个机器人共享，记录到最后设置的指标回调
+     * @param metrics 指标回调，传入null关闭记录
+     */
+    public void setMetrics(LarkMetrics metrics) {
+        this.metrics = metrics != null ? metrics : LarkMetrics.NOOP;
+    }
+
+    /**
+     * 停止后台刷新并从共享实例中移除
+     */
+    public void close() {
+        SHARED.remove(appId, this);
+        refresher.shutdownNow();
+    }
+
+    /**
+     * 生成携带当前凭证的请求选项，SDK使用该凭证而不再自行获取
+     * @param manager 凭证管理器，为null时返回空选项，由SDK自行管理凭证
+     */
+    static RequestOptions requestOptions(TenantTokenManager manager) throws Exception {
+        RequestOptions.Builder options = RequestOptions.newBuilder();
+        if (manager != null) {
+            options.tenantAccessToken(manager.getToken());
+        }
+        return options.build();
+    }
+
+    private void start() {
+        try {
+            refresher.execute(() -> refreshQuietly(false));
+        } catch (RejectedExecutionException e) {
+            // 共享实例在启动前已被其他调用方关闭
+            log.debug("Tenant token manager for app {} was closed before it started", appId);
+        }
+    }
+
+    private void refreshQuietly(boolean force) {
+        try {
+            refresh(force);
+        } catch (Exception e) {
+            // refresh已安排重试
+            log.debug("Tenant token refresh for app {} failed", appId, e);
+        }
+    }
+
+    /**
+     * 获取并保存新凭证，安排下一次刷新；失败时按指数退避重试，旧凭证在过期前继续使用
+     * @param force 为true时忽略内存与缓存文件中尚未过期的凭证
+     */
+    private synchronized Token refresh(boolean force) throws Exception {
+        long now = System.currentTimeMillis();
+        Token token = current;
+        if (!force && token != null && !token.needsRefresh(now, refreshAheadMillis)) {
+            return token;
+        }
+        try {
+            token = cacheFile != null ? refreshShared(force, token) : fetch();
+        } catch (Exception e) {
+            long delay = Math.min(RETRY_MAX_MILLIS, RETRY_BASE_MILLIS << Math.min(failures++, 16));
+            log.warn("Failed to refresh tenant token for app {}, retrying in {} ms", appId, delay, e);
+            schedule(delay);
+            throw e;
+        }
+        failures = 0;
+        current = token;
+        // 加入随机量，避免共享同一缓存文件的多个进程同时刷新
+        long delay = token.expiresAtMillis - refreshAheadMillis - System.currentTimeMillis();
+        schedule(Math.max(RETRY_BASE_MILLIS, delay - ThreadLocalRandom.current().nextLong(Math.max(1, delay / 20))));
+        return token;
+    }
+
+    /**
+     * 在文件锁内读取缓存文件：其他进程已刷新时直接使用，否则请求新凭证并写回
+     * @param stale 当前使用的凭证，强制刷新时缓存文件中与之相同的凭证视为无效
+     */
+    private Token refreshShared(boolean force, Token stale) throws Exception {
+        Files.createDirectories(cacheFile.toAbsolutePath().getParent());
+        Set<StandardOpenOption> options = EnumSet.of(StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try (FileChannel channel = FileChannel.open(cacheFile, options, ownerOnly());
+             FileLock ignored = channel.lock()) {
+            Token cached = readCache(channel);
+            long now = System.currentTimeMillis();
+            if (cached != null && !cached.needsRefresh(now, refreshAheadMillis)
+                    && !(force && stale != null && cached.value.equals(stale.value))) {
+                log.debug("Using tenant token for app {} refreshed by another process", appId);
+                return cached;
+            }
+            Token token = fetch();
+            writeCache(channel, token);
+            return token;
+        }
+    }
+
+    /**
+     * 缓存文件保存凭证明文，支持POSIX权限的文件系统上以 rw------- 创建；已存在且权限更宽的文件收紧为同样的权限
+     */
+    private FileAttribute<?>[] ownerOnly() {
+        if (!cacheFile.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            return new FileAttribute<?>[0];
+        }
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-------");
+        try {
+            if (Files.exists(cacheFile) && !Files.getPosixFilePermissions(cacheFile).equals(permissions)) {
+                Files.setPosixFilePermissions(cacheFile, permissions);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to restrict permissions of token cache file {}", cacheFile, e);
+        }
+        return new FileAttribute<?>[]{PosixFilePermissions.asFileAttribute(permissions)};
+    }
+
+    private Token readCache(FileChannel channel) {
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), 64 * 1024));
+            channel.read(buffer, 0);
+            if (buffer.position() == 0) {
+                return null;
+            }
+            JsonObject json = JsonParser.parseString(
+                new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8)).getAsJsonObject();
+            if (!appId.equals(json.get("app_id").getAsString())) {
+                log.warn("Token cache file {} belongs to app {}, ignoring", cacheFile, json.get("app_id").getAsString());
+                return null;
+            }
+            return new Token(json.get("token").getAsString(), json.get("expires_at").getAsLong());
+        } catch (Exception e) {
+            log.warn("Ignoring unreadable token cache file {}", cacheFile, e);
+            return null;
+        }
+    }
+
+    private void writeCache(FileChannel channel, Token token) {
+        JsonObject json = new JsonObject();
+        json.addProperty("app_id", appId);
+        json.addProperty("token", token.value);
+        json.addProperty("expires_at", token.expiresAtMillis);
+        try {
+            channel.truncate(0);
+            channel.write(ByteBuffer.wrap(json.toString().getBytes(StandardCharsets.UTF_8)), 0);
+            channel.force(false);
+        } catch (IOException e) {
+            // 写缓存失败不影响本进程使用新凭证
+            log.warn("Failed to write token cache file {}", cacheFile, e);
+        }
+    }
+
+    private Token fetch() throws Exception {
+        JsonObject body = new JsonObject();
+        body.addProperty("app_id", appId);
+        body.addProperty("app_secret", appSecret);
+        long start = System.currentTimeMillis();
+        LarkMetrics recorder = metrics;
+        long startNanos = System.nanoTime();
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(baseUrl + TOKEN_PATH).openConnection();
+            connection.setConnectTimeout(5000);
+            connection.setReadTimeout(10000);
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            int status = connection.getResponseCode();
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (in == null) {
+                throw new IOException("Tenant token request failed with HTTP " + status);
+            }
+            JsonObject resp = JsonParser.parseString(readAll(in)).getAsJsonObject();
+            int code = resp.has("code") ? resp.get("code").getAsInt() : -1;
+            String requestId = connection.getHeaderField("X-Tt-Logid");
+            if (code != 0) {
+                recorder.recordCall(LarkMetrics.TENANT_ACCESS_TOKEN, System.nanoTime() - startNanos, code, requestId, null);
+                String msg = resp.has("msg") ? resp.get("msg").getAsString() : "HTTP " + status;
+                throw new LarkApiException("get tenant access token", code, msg, requestId);
+            }
+            // 以请求发出的时间计算过期时间，偏保守
+            Token token = new Token(resp.get("tenant_access_token").getAsString(),
+                start + TimeUnit.SECONDS.toMillis(resp.get("expire").getAsLong()));
+            recorder.recordCall(LarkMetrics.TENANT_ACCESS_TOKEN, System.nanoTime() - startNanos, 0, requestId, null);
+            return token;
+        } catch (IOException | RuntimeException e) {
+            recorder.recordCall(LarkMetrics.TENANT_ACCESS_TOKEN, System.nanoTime() - startNanos, -1, null, e);
+            throw e;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private void schedule(long delayMillis) {
+        // 同步获取或强制刷新后只保留最新的一次定时刷新
+        if (nextRefresh != null) {
+            nextRefresh.cancel(false);
+        }
+        try {
+            nextRefresh = refresher.schedule(() -> refreshQuietly(false), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 已关闭，不再安排刷新；同步获取到的凭证照常返回
+            nextRefresh = null;
+        }
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = input.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class Token {
+        final String value;
+        final long expiresAtMillis;
+
+        Token(String value, long expiresAtMillis) {
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        boolean isValid(long now) {
+            return now < expiresAtMillis - MIN_VALIDITY_MILLIS;
+        }
+
+        boolean needsRefresh(long now, long refreshAheadMillis) {
+            return now >= expiresAtMillis - refreshAheadMillis;
+        }
+    }
+
+    public static class Builder {
+        private final String appId;
+        private final String appSecret;
+        private String baseUrl = "https://open.feishu.cn";
+        private long refreshAheadMillis = TimeUnit.MINUTES.toMillis(20);
+        private Path cacheFile;
+
+        private Builder(String appId, String appSecret) {
+            this.appId = appId;
+            this.appSecret = appSecret;
+        }
+
+        /**
+         * @param baseUrl 开放平台地址，默认飞书；海外版Lark为 https://open.larksuite.com
+         */
+        public Builder baseUrl(String baseUrl) {
+            this.baseUrl = baseUrl;
+            return this;
+        }
+
+        /**
+         * @param ahead 在过期前多久刷新，需小于30分钟，否则飞书返回的仍是旧凭证
+         * @param unit 时间单位
+         */
+        public Builder refreshAhead(long ahead, TimeUnit unit) {
+            long millis = unit.toMillis(ahead);
+            if (millis <= MIN_VALIDITY_MILLIS || millis >= TimeUnit.MINUTES.toMillis(30)) {
+                throw new IllegalArgumentException("refreshAhead must be between 1 and 30 minutes");
+            }
+            this.refreshAheadMillis = millis;
+            return this;
+        }
+
+        /**
+         * @param cacheFile 在多个进程之间共享凭证的缓存文件，文件中保存凭证明文；
+         *                  支持POSIX权限时以只对运行用户可读写的权限创建，其他文件系统需由调用方限制访问
+         */
+        public Builder cacheFile(Path cacheFile) {
+            this.cacheFile = cacheFile;
+            return this;
+        }
+
+        /**
+         * 返回该appId的共享实例，不存在时按本构建器的配置创建并开始在后台获取凭证；
+         * 已存在时直接返回，本构建器的配置不生效
+         * @return 凭证管理器
+         */
+        public TenantTokenManager build() {
+            TenantTokenManager created = null;
+            TenantTokenManager manager;
+            synchronized (SHARED) {
+                manager = SHARED.get(appId);
+                if (manager == null) {
+                    created = new TenantTokenManager(this);
+                    SHARED.put(appId, created);
+                    manager = created;
+                }
+            }
+            if (created != null) {
+                created.start();
+            } else if (!manager.appSecret.equals(appSecret)) {
+                throw new IllegalArgumentException("A TenantTokenManager for app " + appId + " exists with a different secret");
+            }
+            return manager;
+        }
+    }
+}
@@ -7,42 +7,244 @@ public class TextContent {
     }
     
     public static String makeAtSomeonePattern(String someoneOpenId, String username, String idType) {
-        String mentionType;
-        switch (idType) {
-            case "open_id":
-                mentionType = "user_id";
-                break;
-            case "union_id":
-                mentionType = "union_id";
-                break;
-            case "user_id":
-                mentionType = "user_id";
-                break;
-            default:
-                mentionType = "user_id";
-                break;
-        }
-        
-        return String.format("<at %s=\"%s\">%s</at>", mentionType, someoneOpenId, username);
+        return "<at " + mentionAttribute(idType) + "=\"" + someoneOpenId + "\">" + username + "</at>";
     }
     
     public static String makeBoldPattern(String content) {
-        return String.format("<b>%s</b>", content);
+        return "<b>" + content + "</b>";
     }
     
     public static String makeItalianPattern(String content) {
-        return String.format("<i>%s</i>", content);
+        return "<i>" + content + "</i>";
     }
     
     public static String makeUnderlinePattern(String content) {
-        return String.format("<u>%s</u>", content);
+        return "<u>" + content + "</u>";
     }
     
     public static String makeDeleteLinePattern(String content) {
-        return String.format("<s>%s</s>", content);
+        return "<s>" + content + "</s>";
     }
     
     public static String makeUrlPattern(String url, String text) {
-        return String.format("[%s](%s)", text, url);
+        return "[" + text + "](" + url + ")";
+    }
+
+    /**
+     * 创建文本消息构造器，用户输入的文本会被转义
+     * @return 构造器
+     */
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    private static String mentionAttribute(String idType) {
+        switch (idType) {
+            case "union_id":
+                return "union_id";
+            case "open_id":
+            case "user_id":
+            default:
+                return "user_id";
+        }
+    }
+
+    /**
+     * 文本消息构造器。标记直接追加到同一个缓冲区中，缓冲区内容即为已转义的JSON字符串，
+     * toJson() 只需补上首尾即可得到 {"text": ...} 消息内容。非线程安全。
+     */
+    public static class Builder {
+        private static final String PREFIX = "{\"text\":\"";
+        private static final String SUFFIX = "\"}";
+        private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+        private final StringBuilder buffer = new StringBuilder(128).append(PREFIX);
+
+        Builder() {
+        }
+
+        /**
+         * 追加普通文本
+         * @param text 文本，其中的 &amp; &lt; &gt; 会被转义
+         */
+        public Builder text(String text) {
+            appendEscapedText(text);
+            return this;
+        }
+
+        /**
+         * 追加不做转义的标记，调用方需保证其合法
+         * @param markup 标记
+         */
+        public Builder raw(String markup) {
+            appendJson(markup);
+            return this;
+        }
+
+        public Builder bold(String text) {
+            return wrap("<b>", text, "</b>");
+        }
+
+        public Builder italic(String text) {
+            return wrap("<i>", text, "</i>");
+        }
+
+        public Builder underline(String text) {
+            return wrap("<u>", text, "</u>");
+        }
+
+        public Builder strikethrough(String text) {
+            return wrap("<s>", text, "</s>");
+        }
+
+        public Builder atAll() {
+            appendJson("<at user_id=\"all\"></at>");
+            return this;
+        }
+
+        /**
+         * 追加@提醒
+         * @param id 用户ID
+         * @param username 显示的用户名
+         * @param idType ID类型 ('open_id'、'union_id' 或 'user_id')
+         */
+        public Builder at(String id, String username, String idType) {
+            appendJson("<at ");
+            appendJson(mentionAttribute(idType));
+            appendJson("=\"");
+            appendEscapedAttribute(id);
+            appendJson("\">");
+            appendEscapedText(username);
+            appendJson("</at>");
+            return this;
+        }
+
+        /**
+         * 追加超链接
+         * @param url 链接地址，其中的括号、空白和引号会被百分号编码
+         * @param text 链接文字，其中的方括号会被转义
+         */
+        public Builder link(String url, String text) {
+            appendJson("[");
+            appendEscapedLinkText(text);
+            appendJson("](");
+            appendEncodedUrl(url);
+            appendJson(")");
+            return this;
+        }
+
+        public Builder newLine() {
+            buffer.append("\\n");
+            return this;
+        }
+
+        /**
+         * @return 文本消息内容的JSON字符串
+         */
+        public String toJson() {
+            int length = buffer.length();
+            String json = buffer.append(SUFFIX).toString();
+            buffer.setLength(length);
+            return json;
+        }
+
+        private Builder wrap(String open, String text, String close) {
+            appendJson(open);
+            appendEscapedText(text);
+            appendJson(close);
+            return this;
+        }
+
+        private void appendEscapedText(String text) {
+            for (int i = 0, n = text.length(); i < n; i++) {
+                appendEscapedText(text.charAt(i));
+            }
+        }
+
+        private void appendEscapedText(char c) {
+            switch (c) {
+                case '&':
+                    buffer.append("&amp;");
+                    break;
+                case '<':
+                    buffer.append("&lt;");
+                    break;
+                case '>':
+                    buffer.append("&gt;");
+                    break;
+                default:
+                    appendJson(c);
+            }
+        }
+
+        private void appendEscapedAttribute(String value) {
+            for (int i = 0, n = value.length(); i < n; i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    buffer.append("&quot;");
+                } else {
+                    appendEscapedText(c);
+                }
+            }
+        }
+
+        private void appendEscapedLinkText(String text) {
+            for (int i = 0, n = text.length(); i < n; i++) {
+                char c = text.charAt(i);
+                if (c == '[') {
+                    buffer.append("&#91;");
+                } else if (c == ']') {
+                    buffer.append("&#93;");
+                } else {
+                    appendEscapedText(c);
+                }
+            }
+        }
+
+        private void appendEncodedUrl(String url) {
+            for (int i = 0, n = url.length(); i < n; i++) {
+                char c = url.charAt(i);
+                if (c == '(' || c == ')' || c == '"' || c == '<' || c == '>' || c <= ' ') {
+                    buffer.append('%').append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+                } else {
+                    appendJson(c);
+                }
+            }
+        }
+
+        private void appendJson(String value) {
+            for (int i = 0, n = value.length(); i < n; i++) {
+                appendJson(value.charAt(i));
+            }
+        }
+
+        // 按JSON字符串规则转义单个字符
+        private void appendJson(char c) {
+            switch (c) {
+                case '"':
+                    buffer.append("\\\"");
+                    break;
+                case '\\':
+                    buffer.append("\\\\");
+                    break;
+                case '\n':
+                    buffer.append("\\n");
+                    break;
+                case '\r':
+                    buffer.append("\\r");
+                    break;
+                case '\t':
+                    buffer.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        buffer.append("\\u")
+                            .append(HEX[(c >> 12) & 0xF]).append(HEX[(c >> 8) & 0xF])
+                            .append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+                    } else {
+                        buffer.append(c);
+                    }
+            }
+        }
     }
 }
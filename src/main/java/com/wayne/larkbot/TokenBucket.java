@@ -0,0 +1,73 @@
+package com.wayne.larkbot;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶，按预约方式发放令牌；被限流后速率减半并在恢复周期内线性回升
+ */
+class TokenBucket {
+    private static final double MIN_RATE_FACTOR = 0.1;
+
+    private final double maxRate;
+    private final double burst;
+    private final long recoveryNanos;
+    private double rate;
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param maxRate 每秒最多发放的令牌数
+     * @param burst 允许的突发令牌数
+     * @param recoveryNanos 被限流后速率从一半恢复到最大值所需的时间
+     */
+    TokenBucket(double maxRate, double burst, long recoveryNanos) {
+        if (maxRate <= 0 || burst < 1) {
+            throw new IllegalArgumentException("maxRate must be positive and burst at least 1");
+        }
+        this.maxRate = maxRate;
+        this.burst = burst;
+        this.recoveryNanos = recoveryNanos;
+        this.rate = maxRate;
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * 预约一个令牌
+     * @return 调用方需要等待的纳秒数，0表示可立即发送
+     */
+    synchronized long reserve() {
+        refill(System.nanoTime());
+        tokens -= 1;
+        if (tokens >= 0) {
+            return 0;
+        }
+        return (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * 服务端返回限流错误时调用，速率减半并清空积攒的令牌
+     */
+    synchronized void onThrottled() {
+        refill(System.nanoTime());
+        rate = Math.max(maxRate * MIN_RATE_FACTOR, rate / 2);
+        tokens = Math.min(tokens, 0);
+    }
+
+    synchronized double currentRate() {
+        refill(System.nanoTime());
+        return rate;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefillNanos;
+        if (elapsed <= 0) {
+            return;
+        }
+        lastRefillNanos = now;
+        tokens = Math.min(burst, tokens + rate * elapsed / TimeUnit.SECONDS.toNanos(1));
+        if (rate < maxRate) {
+            rate = recoveryNanos <= 0 ? maxRate : Math.min(maxRate, rate + maxRate * elapsed / recoveryNanos);
+        }
+    }
+}
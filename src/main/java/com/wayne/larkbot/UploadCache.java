@@ -0,0 +1,182 @@
+package com.wayne.larkbot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上传去重缓存：按文件内容的SHA-256摘要记录已上传的 image_key / file_key，命中时跳过上传。
+ * 索引持久化为追加写入的文本文件，每行为 "类型\t摘要\tkey\t过期时间戳"，启动时加载并清理过期记录。
+ */
+public class UploadCache {
+    private static final Logger log = LoggerFactory.getLogger(UploadCache.class);
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Path indexFile;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries = new HashMap<>(); // 由this保护
+
+    /**
+     * @param indexFile 索引文件路径，不存在时自动创建
+     * @param ttl 上传结果的有效期，应不超过飞书侧资源key的有效期
+     * @param unit 有效期单位
+     * @throws IOException 读取索引文件失败
+     */
+    public UploadCache(Path indexFile, long ttl, TimeUnit unit) throws IOException {
+        this.indexFile = indexFile;
+        this.ttlMillis = unit.toMillis(ttl);
+        load();
+    }
+
+    /**
+     * 流式计算文件内容的SHA-256摘要
+     * @param file 文件路径
+     * @return 十六进制摘要
+     * @throws IOException 读取文件失败
+     */
+    public static String digest(Path file) throws IOException {
+        MessageDigest digest = newSha256();
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * 查找已上传的key
+     * @param kind 资源类型，如 "image" 或 "file:pdf"
+     * @param digest 文件内容摘要
+     * @return 未过期的key，没有时返回null
+     */
+    public synchronized String get(String kind, String digest) {
+        Entry entry = entries.get(kind + "\t" + digest);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMillis <= System.currentTimeMillis()) {
+            entries.remove(kind + "\t" + digest);
+            return null;
+        }
+        return entry.key;
+    }
+
+    /**
+     * 记录上传结果并追加写入索引文件
+     * @param kind 资源类型
+     * @param digest 文件内容摘要
+     * @param key 飞书返回的 image_key 或 file_key
+     */
+    public synchronized void put(String kind, String digest, String key) {
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        entries.put(kind + "\t" + digest, new Entry(key, expiresAt));
+        try (BufferedWriter writer = Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(kind + "\t" + digest + "\t" + key + "\t" + expiresAt);
+            writer.newLine();
+        } catch (IOException e) {
+            log.warn("Failed to write upload cache index {}", indexFile, e);
+        }
+    }
+
+    /**
+     * 清空缓存与索引文件
+     * @throws IOException 删除索引文件失败
+     */
+    public synchronized void clear() throws IOException {
+        entries.clear();
+        Files.deleteIfExists(indexFile);
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(indexFile)) {
+            if (indexFile.getParent() != null) {
+                Files.createDirectories(indexFile.getParent());
+            }
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                String[] parts = line.split("\t");
+                if (parts.length != 4) {
+                    continue;
+                }
+                long expiresAt;
+                try {
+                    expiresAt = Long.parseLong(parts[3]);
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (expiresAt > now) {
+                    entries.put(parts[0] + "\t" + parts[1], new Entry(parts[2], expiresAt));
+                }
+            }
+        }
+        // 过期或被覆盖的记录过多时重写索引文件
+        if (lines > entries.size() * 2 + 100) {
+            compact();
+        }
+    }
+
+    private void compact() throws IOException {
+        Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                writer.write(entry.getKey() + "\t" + entry.getValue().key + "\t" + entry.getValue().expiresAtMillis);
+                writer.newLine();
+            }
+        }
+        Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    private static class Entry {
+        final String key;
+        final long expiresAtMillis;
+
+        Entry(String key, long expiresAtMillis) {
+            this.key = key;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.wayne.larkbot;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 批量上传的结果：成功文件的key、失败文件的异常以及整体吞吐
+ */
+public class UploadReport {
+    private final Map<String, String> keys;
+    private final Map<String, Throwable> failures;
+    private final long totalBytes;
+    private final long elapsedMillis;
+
+    UploadReport(Map<String, String> keys, Map<String, Throwable> failures, long totalBytes, long elapsedMillis) {
+        this.keys = Collections.unmodifiableMap(keys);
+        this.failures = Collections.unmodifiableMap(failures);
+        this.totalBytes = totalBytes;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return 上传成功的文件路径到 image_key / file_key 的映射，顺序与输入一致
+     */
+    public Map<String, String> getKeys() {
+        return keys;
+    }
+
+    /**
+     * @return 上传失败的文件路径到异常的映射，飞书返回错误码时为 LarkApiException
+     */
+    public Map<String, Throwable> getFailures() {
+        return failures;
+    }
+
+    public boolean isAllSucceeded() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * @return 实际上传的总字节数：命中上传缓存的文件不计，预处理过的图片按处理后的大小计
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return 整体吞吐，字节每秒
+     */
+    public double getBytesPerSecond() {
+        return elapsedMillis > 0 ? totalBytes * 1000.0 / elapsedMillis : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("UploadReport{success=%d, failure=%d, bytes=%d, elapsed=%dms, throughput=%.1fKB/s}",
+            keys.size(), failures.size(), totalBytes, elapsedMillis, getBytesPerSecond() / 1024);
+    }
+}
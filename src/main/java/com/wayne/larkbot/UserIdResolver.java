@@ -0,0 +1,257 @@
+package com.wayne.larkbot;
+
+import com.lark.oapi.Client;
+import com.lark.oapi.service.contact.v3.model.BatchGetIdUserReq;
+import com.lark.oapi.service.contact.v3.model.BatchGetIdUserReqBody;
+import com.lark.oapi.service.contact.v3.model.BatchGetIdUserResp;
+import com.lark.oapi.service.contact.v3.model.UserContactInfo;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合并单个邮箱/手机号的用户ID查询：在一个短时间窗口内收集并发请求，或凑满接口单次上限后，
+ * 通过一次 batch_get_id 请求批量查询，再把结果分发给各个调用方；查询结果带过期时间缓存。
+ */
+public class UserIdResolver {
+    /** batch_get_id 单次最多查询的邮箱数与手机号数 */
+    static final int MAX_BATCH_SIZE = 50;
+    private static final int MAX_CACHED_IDS = 100000;
+
+    private final Client client;
+    private volatile TenantTokenManager tokenManager; // 为null时由SDK自行获取凭证
+    private volatile ApiCaller caller = ApiCaller.DIRECT;
+    private final ExecutorService executor;
+    private final long windowMillis;
+    private final long cacheTtlNanos;
+    private final ScheduledExecutorService timer;
+    private final Map<String, CompletableFuture<String>> pendingEmails = new LinkedHashMap<>(); // 由this保护
+    private final Map<String, CompletableFuture<String>> pendingMobiles = new LinkedHashMap<>(); // 由this保护
+    private boolean flushScheduled; // 由this保护
+    private final Map<String, CachedId> cache = new LinkedHashMap<String, CachedId>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedId> eldest) {
+            return size() > MAX_CACHED_IDS;
+        }
+    };
+
+    /**
+     * @param client 飞书SDK客户端
+     * @param executor 执行批量请求的执行器
+     * @param windowMillis 收集并发查询的时间窗口
+     * @param cacheTtl 查询结果的缓存时间
+     * @param unit 缓存时间单位
+     */
+    public UserIdResolver(Client client, ExecutorService executor, long windowMillis, long cacheTtl, TimeUnit unit) {
+        this.client = client;
+        this.executor = executor;
+        this.windowMillis = windowMillis;
+        this.cacheTtlNanos = unit.toNanos(cacheTtl);
+        this.timer = Executors.newSingleThreadScheduledExecutor(LarkExecutors.daemonThreadFactory("lark-user-resolver"));
+    }
+
+    /**
+     * @param tokenManager 提供凭证的管理器，为null时由SDK自行获取
+     */
+    void setTenantTokenManager(TenantTokenManager tokenManager) {
+        this.tokenManager = tokenManager;
+    }
+
+    /**
+     * @param caller 发起SDK调用的方式，由LarkBot设置以记录指标
+     */
+    void setApiCaller(ApiCaller caller) {
+        this.caller = caller;
+    }
+
+    /**
+     * 根据邮箱查询用户ID
+     * @param email 邮箱
+     * @return 用户ID的Future，用户不存在时结果为null
+     */
+    public CompletableFuture<String> resolveByEmail(String email) {
+        return resolve("email:" + email, email, pendingEmails);
+    }
+
+    /**
+     * 根据手机号查询用户ID
+     * @param mobile 手机号
+     * @return 用户ID的Future，用户不存在时结果为null
+     */
+    public CompletableFuture<String> resolveByMobile(String mobile) {
+        return resolve("mobile:" + mobile, mobile, pendingMobiles);
+    }
+
+    /**
+     * 清空缓存的查询结果
+     */
+    public void invalidateAll() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * 停止合并计时器
+     */
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    private CompletableFuture<String> resolve(String cacheKey, String value, Map<String, CompletableFuture<String>> pending) {
+        synchronized (cache) {
+            CachedId cached = cache.get(cacheKey);
+            if (cached != null && System.nanoTime() < cached.expiresAtNanos) {
+                return CompletableFuture.completedFuture(cached.userId);
+            }
+        }
+
+        CompletableFuture<String> future;
+        boolean flushNow = false;
+        boolean scheduleFlush = false;
+        synchronized (this) {
+            // 同一批次内重复的查询共用一个Future
+            future = pending.get(value);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            pending.put(value, future);
+            if (pendingEmails.size() >= MAX_BATCH_SIZE || pendingMobiles.size() >= MAX_BATCH_SIZE) {
+                flushNow = true;
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                scheduleFlush = true;
+            }
+        }
+        if (flushNow) {
+            submitFlush();
+        } else if (scheduleFlush) {
+            try {
+                timer.schedule(this::submitFlush, windowMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                failPending(e);
+            }
+        }
+        return future;
+    }
+
+    /**
+     * 把批量查询交给执行器；执行器已满或已关闭时让所有等待中的查询以异常完成，避免它们永远等待
+     */
+    private void submitFlush() {
+        try {
+            executor.execute(this::flush);
+        } catch (RejectedExecutionException e) {
+            failPending(e);
+        }
+    }
+
+    private void failPending(Throwable t) {
+        List<CompletableFuture<String>> failed;
+        synchronized (this) {
+            flushScheduled = false;
+            failed = new ArrayList<>(pendingEmails.values());
+            failed.addAll(pendingMobiles.values());
+            pendingEmails.clear();
+            pendingMobiles.clear();
+        }
+        failed.forEach(future -> future.completeExceptionally(t));
+    }
+
+    private void flush() {
+        Map<String, CompletableFuture<String>> emails;
+        Map<String, CompletableFuture<String>> mobiles;
+        boolean more;
+        synchronized (this) {
+            emails = drain(pendingEmails);
+            mobiles = drain(pendingMobiles);
+            flushScheduled = false;
+            more = !pendingEmails.isEmpty() || !pendingMobiles.isEmpty();
+        }
+        if (more) {
+            // 超出单次上限的部分进入下一批
+            submitFlush();
+        }
+        if (emails.isEmpty() && mobiles.isEmpty()) {
+            return;
+        }
+
+        try {
+            BatchGetIdUserReq req = BatchGetIdUserReq.newBuilder()
+                .batchGetIdUserReqBody(BatchGetIdUserReqBody.newBuilder()
+                    .emails(emails.keySet().toArray(new String[0]))
+                    .mobiles(mobiles.keySet().toArray(new String[0]))
+                    .includeResigned(true)
+                    .build())
+                .build();
+            BatchGetIdUserResp resp = caller.call(LarkMetrics.GET_USER_ID,
+                () -> client.contact().user().batchGetId(req, TenantTokenManager.requestOptions(tokenManager)));
+            if (!resp.success()) {
+                throw new LarkApiException("get user info", resp.getCode(), resp.getMsg(), resp.getRequestId());
+            }
+
+            UserContactInfo[] users = resp.getData().getUserList();
+            if (users != null) {
+                long expiresAt = System.nanoTime() + cacheTtlNanos;
+                for (UserContactInfo user : users) {
+                    if (user.getUserId() == null) {
+                        continue;
+                    }
+                    complete(emails, user.getEmail(), "email:", user.getUserId(), expiresAt);
+                    complete(mobiles, user.getMobile(), "mobile:", user.getUserId(), expiresAt);
+                }
+            }
+            // 未返回的邮箱或手机号视为用户不存在
+            emails.values().forEach(future -> future.complete(null));
+            mobiles.values().forEach(future -> future.complete(null));
+        } catch (Throwable t) {
+            emails.values().forEach(future -> future.completeExceptionally(t));
+            mobiles.values().forEach(future -> future.completeExceptionally(t));
+        }
+    }
+
+    private void complete(Map<String, CompletableFuture<String>> batch, String value, String prefix,
+                          String userId, long expiresAt) {
+        if (value == null) {
+            return;
+        }
+        CompletableFuture<String> future = batch.remove(value);
+        if (future != null) {
+            synchronized (cache) {
+                cache.put(prefix + value, new CachedId(userId, expiresAt));
+            }
+            future.complete(userId);
+        }
+    }
+
+    private static Map<String, CompletableFuture<String>> drain(Map<String, CompletableFuture<String>> pending) {
+        Map<String, CompletableFuture<String>> batch = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, CompletableFuture<String>>> it = pending.entrySet().iterator();
+        while (it.hasNext() && batch.size() < MAX_BATCH_SIZE) {
+            Map.Entry<String, CompletableFuture<String>> entry = it.next();
+            batch.put(entry.getKey(), entry.getValue());
+            it.remove();
+        }
+        return batch;
+    }
+
+    private static class CachedId {
+        final String userId;
+        final long expiresAtNanos;
+
+        CachedId(String userId, long expiresAtNanos) {
+            this.userId = userId;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
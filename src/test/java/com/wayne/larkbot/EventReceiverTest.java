@@ -0,0 +1,114 @@
+package com.wayne.larkbot;
+
+import com.lark.oapi.core.response.EventResp;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用录制的 im.message.receive_v1 事件回放 EventReceiver 的去重与积压时返回503的路径
+ */
+public class EventReceiverTest {
+    private static final String EVENT_ID = "5e3702a84e847582be8db7fb73283c02";
+
+    private ExecutorService workers;
+    private Path payload;
+
+    @Before
+    public void setUp() throws URISyntaxException {
+        workers = Executors.newFixedThreadPool(2);
+        payload = Paths.get(getClass().getResource("/events/im.message.receive_v1.json").toURI());
+    }
+
+    @After
+    public void tearDown() {
+        workers.shutdownNow();
+    }
+
+    @Test
+    public void redeliveredEventIsHandledOnce() throws Throwable {
+        AtomicInteger handled = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        EventReceiver receiver = EventReceiver.newBuilder("v_token", "")
+            .workers(workers)
+            .onMessageReceive(event -> {
+                handled.incrementAndGet();
+                done.countDown();
+            })
+            .build();
+
+        assertEquals(200, receiver.replay(payload).getStatusCode());
+        assertEquals(200, receiver.replay(payload).getStatusCode());
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, receiver.getReceivedCount());
+        assertEquals(1, receiver.getDuplicateCount());
+        workers.shutdown();
+        assertTrue(workers.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(1, handled.get());
+    }
+
+    @Test
+    public void fullBacklogReturns503AndAcceptsTheRedelivery() throws Throwable {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch handled = new CountDownLatch(2);
+        EventReceiver receiver = EventReceiver.newBuilder("v_token", "")
+            .workers(workers)
+            .maxPending(1)
+            .onMessageReceive(event -> {
+                release.await();
+                handled.countDown();
+            })
+            .build();
+
+        assertEquals(200, dispatch(receiver, withEventId(EVENT_ID)).getStatusCode());
+        // 第一个事件仍在处理，第二个超出积压上限
+        EventResp busy = dispatch(receiver, withEventId("event-2"));
+        assertEquals(503, busy.getStatusCode());
+        assertEquals(1, receiver.getRejectedCount());
+
+        release.countDown();
+        waitForIdle(receiver);
+        // 被拒绝的事件没有留下去重记录，平台重推时正常处理
+        assertEquals(200, dispatch(receiver, withEventId("event-2")).getStatusCode());
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        assertEquals(0, receiver.getDuplicateCount());
+    }
+
+    private byte[] withEventId(String eventId) throws Exception {
+        String body = new String(Files.readAllBytes(payload), StandardCharsets.UTF_8);
+        return body.replace(EVENT_ID, eventId).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static EventResp dispatch(EventReceiver receiver, byte[] body) throws Throwable {
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.put("Content-Type", Collections.singletonList("application/json"));
+        return receiver.dispatch("/webhook/event", headers, body);
+    }
+
+    private static void waitForIdle(EventReceiver receiver) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (receiver.getPendingCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, receiver.getPendingCount());
+    }
+}